@@ -0,0 +1,26 @@
+package brain;
+
+import org.openjdk.jmh.Main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Запуск бенчмарков с записью результатов в JSON. Если формат результатов не задан в аргументах,
+ * они пишутся в {@code jmh-result-<версия>.json}, чтобы прогоны разных версий можно было сравнить.
+ * Остальные аргументы - обычные аргументы JMH.
+ */
+public class BenchmarkRunner {
+    public static void main(String[] args) throws Exception {
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        if (!arguments.contains("-rf")) {
+            String version = BenchmarkRunner.class.getPackage().getImplementationVersion();
+            arguments.add("-rf");
+            arguments.add("json");
+            arguments.add("-rff");
+            arguments.add("jmh-result-" + (version == null ? "dev" : version.replace(' ', '-')) + ".json");
+        }
+        Main.main(arguments.toArray(new String[arguments.size()]));
+    }
+}
@@ -0,0 +1,68 @@
+package brain;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Перевод ключей и значений в строки и обратно во всех кодировках окна
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BytesToStringConverterBenchmark {
+    private static final int SAMPLES = 1024;
+
+    @Param({Constants.HEX, Constants.UTF8, Constants.AHCII, Constants.CP1251})
+    public String encoding;
+
+    @Param({"keys", "values"})
+    public String payload;
+
+    private List<byte[]> bytes;
+    private String[] texts;
+
+    @Setup
+    public void setUp() throws Exception {
+        Random random = new Random(Payloads.SEED);
+        bytes = new ArrayList<>(SAMPLES);
+        texts = new String[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            int size = "keys".equals(payload) ? Payloads.keySize(random) : Payloads.valueSize(random);
+            bytes.add(Payloads.bytes(random, size, encoding));
+            texts[i] = BytesToStringConverter.toString(bytes.get(i), encoding);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public void toStringEach(Blackhole blackhole) throws Exception {
+        for (byte[] value : bytes) {
+            blackhole.consume(BytesToStringConverter.toString(value, encoding));
+        }
+    }
+
+    /**
+     * Страница ключей целиком, как её декодирует список строк
+     */
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public String[] toStringsPage() throws Exception {
+        return BytesToStringConverter.toStrings(bytes, encoding);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public void toBytes(Blackhole blackhole) throws Exception {
+        for (String text : texts) {
+            blackhole.consume(BytesToStringConverter.toBytes(text, encoding));
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package brain;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.*;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.*;
+
+/**
+ * Таблица в памяти для бенчмарков, отдаётся {@link DatabaseWorker} через фабрику таблиц.
+ * Умеет только Get и Scan по ключам; скан с фильтром отдаёт по одной ячейке на строку без значения,
+ * как регион-сервер со сканом просмотра ключей. Остальные операции не поддерживаются.
+ */
+final class InMemoryTable implements InvocationHandler {
+    private final byte[] name;
+    private final NavigableMap<byte[], KeyValue[]> rows = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+
+    InMemoryTable(String name) {
+        this.name = Bytes.toBytes(name);
+    }
+
+    /**
+     * @param cells ячейки строки в порядке столбцов
+     */
+    void put(byte[] row, KeyValue[] cells) {
+        rows.put(row, cells);
+    }
+
+    /**
+     * @return фабрика, которая отдаёт эту таблицу под любым именем
+     */
+    HTableInterfaceFactory factory() {
+        final HTableInterface table = (HTableInterface) Proxy.newProxyInstance(HTableInterface.class.getClassLoader(),
+                new Class<?>[]{HTableInterface.class}, this);
+        return new HTableInterfaceFactory() {
+            @Override
+            public HTableInterface createHTableInterface(Configuration config, byte[] tableName) {
+                return table;
+            }
+
+            @Override
+            public void releaseHTableInterface(HTableInterface table) {
+            }
+        };
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "get":
+                if (args.length == 1 && args[0] instanceof Get)
+                    return get((Get) args[0]);
+                break;
+            case "getScanner":
+                if (args.length == 1 && args[0] instanceof Scan)
+                    return new Scanner((Scan) args[0]);
+                break;
+            case "getTableName":
+                return name;
+            case "close":
+                return null;
+        }
+        throw new UnsupportedOperationException(method.toString());
+    }
+
+    private Result get(Get get) {
+        KeyValue[] cells = rows.get(get.getRow());
+        return cells == null ? new Result() : new Result(cells);
+    }
+
+    private class Scanner implements ResultScanner {
+        private final Iterator<Map.Entry<byte[], KeyValue[]>> iterator;
+        private final boolean keysOnly;
+
+        Scanner(Scan scan) {
+            byte[] stopRow = scan.getStopRow();
+            SortedMap<byte[], KeyValue[]> range = stopRow.length == 0
+                    ? rows.tailMap(scan.getStartRow()) : rows.subMap(scan.getStartRow(), stopRow);
+            iterator = range.entrySet().iterator();
+            Filter filter = scan.getFilter();
+            keysOnly = filter != null;
+        }
+
+        @Override
+        public Result next() throws IOException {
+            if (!iterator.hasNext())
+                return null;
+            KeyValue[] cells = iterator.next().getValue();
+            if (!keysOnly)
+                return new Result(cells);
+            KeyValue first = cells[0];
+            return new Result(new KeyValue[]{new KeyValue(first.getRow(), first.getFamily(), first.getQualifier(),
+                    first.getTimestamp(), new byte[0])});
+        }
+
+        @Override
+        public Result[] next(int nbRows) throws IOException {
+            List<Result> results = new ArrayList<>(nbRows);
+            Result result;
+            while (results.size() < nbRows && (result = next()) != null) {
+                results.add(result);
+            }
+            return results.toArray(new Result[results.size()]);
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public Iterator<Result> iterator() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package brain;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Arrays;
+
+/**
+ * Задержки одной операции нагрузочного теста, число обработанных строк и пик занятой кучи за время замера
+ */
+final class LatencyStats {
+    private final String name;
+    private long[] samples = new long[1024];
+    private int size;
+    private long rows;
+    private long startTime;
+    private long elapsed;
+    private long peakHeap;
+
+    LatencyStats(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Начинает замер, сбрасывая пики пулов памяти
+     */
+    void start() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP)
+                pool.resetPeakUsage();
+        }
+        startTime = System.nanoTime();
+    }
+
+    void record(long nanos, long processedRows) {
+        if (size == samples.length)
+            samples = Arrays.copyOf(samples, size * 2);
+        samples[size++] = nanos;
+        rows += processedRows;
+    }
+
+    void finish() {
+        elapsed = System.nanoTime() - startTime;
+        // пики пулов достигаются в разное время, поэтому сумма - верхняя оценка
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP)
+                peak += pool.getPeakUsage().getUsed();
+        }
+        peakHeap = peak;
+    }
+
+    private double percentileMillis(double percentile) {
+        if (size == 0)
+            return 0;
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        int index = (int) Math.min(size - 1, Math.ceil(percentile * size) - 1);
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    static String header() {
+        return String.format("%-16s %8s %10s %10s %12s %10s", "operation", "calls", "p50 ms", "p99 ms", "rows/s",
+                "heap MB");
+    }
+
+    @Override
+    public String toString() {
+        double seconds = elapsed / 1e9;
+        return String.format("%-16s %8d %10.2f %10.2f %12.0f %10d", name, size, percentileMillis(0.5),
+                percentileMillis(0.99), seconds > 0 ? rows / seconds : 0, peakHeap / (1024 * 1024));
+    }
+}
@@ -0,0 +1,262 @@
+package brain;
+
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.HTable;
+import org.apache.hadoop.hbase.client.Put;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Нагрузочный тест на миникластере HBase в одном процессе. Создаёт таблицу заданной формы
+ * ({@link TableShape}) и без окна вызывает методы {@link DatabaseWorker}, которыми пользуется просмотр:
+ * список таблиц, семейства, чтение всех ключей по регионам, чтение строки, страницы широкой строки и запись
+ * изменений. Для каждой операции печатает p50/p99 задержки, строки в секунду и пик кучи.
+ * <p>
+ * Запуск: {@code java -cp benchmarks/target/benchmarks.jar brain.LoadTest rows=1000000 keySize=32 versions=3}.
+ * Миникластер живёт в том же процессе, поэтому пик кучи включает и его - сравнивать стоит прогоны между собой.
+ */
+public class LoadTest {
+    private static final String TABLE = "loadtest";
+    private static final int LOAD_BATCH = 1000;
+    private final TableShape shape;
+    private final int samples;
+    private final Random random = new Random(Payloads.SEED);
+    private final List<LatencyStats> results = new ArrayList<>();
+
+    private LoadTest(Map<String, String> arguments) {
+        shape = new TableShape(arguments);
+        String value = arguments.get("samples");
+        samples = value == null ? 1000 : Integer.parseInt(value);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> arguments = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator <= 0)
+                throw new IllegalArgumentException("Expected name=value: " + arg);
+            arguments.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        new LoadTest(arguments).run();
+    }
+
+    private void run() throws Exception {
+        HBaseTestingUtility cluster = new HBaseTestingUtility();
+        cluster.startMiniCluster(1);
+        try {
+            createTable(cluster);
+            DatabaseWorker databaseWorker = new DatabaseWorker(cluster.getConfiguration());
+            try {
+                measureTableNames(databaseWorker);
+                measureFamilies(databaseWorker);
+                measureRowKeys(databaseWorker);
+                measureRows(databaseWorker);
+                measureWideRows(databaseWorker);
+                measureCommits(databaseWorker);
+            } finally {
+                databaseWorker.close();
+            }
+        } finally {
+            cluster.shutdownMiniCluster();
+        }
+        System.out.println(shape);
+        System.out.println(LatencyStats.header());
+        for (LatencyStats stats : results) {
+            System.out.println(stats);
+        }
+    }
+
+    private void createTable(HBaseTestingUtility cluster) throws Exception {
+        HTableDescriptor descriptor = new HTableDescriptor(TABLE);
+        for (int i = 0; i < shape.families; i++) {
+            HColumnDescriptor family = new HColumnDescriptor(shape.family(i));
+            family.setMaxVersions(shape.versions);
+            descriptor.addFamily(family);
+        }
+        cluster.getHBaseAdmin().createTable(descriptor, shape.splitKeys());
+        LatencyStats stats = begin("load");
+        HTable table = new HTable(cluster.getConfiguration(), TABLE);
+        try {
+            table.setAutoFlush(false);
+            List<Put> batch = new ArrayList<>(LOAD_BATCH);
+            for (int row = 0; row < shape.rows; row++) {
+                batch.add(put(row));
+                if (batch.size() == LOAD_BATCH || row == shape.rows - 1) {
+                    long start = System.nanoTime();
+                    table.put(batch);
+                    table.flushCommits();
+                    stats.record(System.nanoTime() - start, batch.size());
+                    batch.clear();
+                }
+            }
+        } finally {
+            table.close();
+        }
+        stats.finish();
+    }
+
+    private Put put(int row) {
+        Put put = new Put(shape.key(row));
+        for (int family = 0; family < shape.families; family++) {
+            for (int column = 0; column < shape.columnsOf(row); column++) {
+                for (int version = 1; version <= shape.versions; version++) {
+                    put.add(shape.family(family), shape.qualifier(column), version, value());
+                }
+            }
+        }
+        return put;
+    }
+
+    private byte[] value() {
+        return Payloads.bytes(random, shape.valueSize, Constants.HEX);
+    }
+
+    private LatencyStats begin(String name) {
+        LatencyStats stats = new LatencyStats(name);
+        results.add(stats);
+        stats.start();
+        return stats;
+    }
+
+    /**
+     * Кэши сбрасываются перед каждым вызовом, иначе замерялся бы кэш, а не кластер
+     */
+    private void measureTableNames(DatabaseWorker databaseWorker) throws Exception {
+        LatencyStats stats = begin("getTableNames");
+        for (int i = 0; i < samples; i++) {
+            databaseWorker.invalidateCaches();
+            long start = System.nanoTime();
+            databaseWorker.getTableNames();
+            stats.record(System.nanoTime() - start, 0);
+        }
+        stats.finish();
+    }
+
+    private void measureFamilies(DatabaseWorker databaseWorker) throws Exception {
+        LatencyStats stats = begin("getFamilies");
+        for (int i = 0; i < samples; i++) {
+            databaseWorker.invalidateCaches();
+            long start = System.nanoTime();
+            databaseWorker.getFamilies(TABLE);
+            stats.record(System.nanoTime() - start, 0);
+        }
+        stats.finish();
+    }
+
+    /**
+     * Чтение всех ключей так же, как их читает список строк; задержка - ожидание очередной страницы
+     */
+    private void measureRowKeys(DatabaseWorker databaseWorker) throws Exception {
+        LatencyStats stats = begin("readRowKeys");
+        RegionKeysReader reader = databaseWorker.readRowKeysByRegions(TABLE, RowKeySearch.ALL,
+                RowKeysListModel.PAGE_SIZE);
+        try {
+            while (true) {
+                long start = System.nanoTime();
+                List<byte[]> page = reader.nextPage();
+                if (page == null)
+                    break;
+                stats.record(System.nanoTime() - start, page.size());
+            }
+        } finally {
+            reader.close();
+        }
+        stats.finish();
+    }
+
+    /**
+     * Первая страница столбцов обычных строк в случайном порядке, как при выборе строки в списке,
+     * а затем повторный выбор тех же строк, который отвечает из кэша строк
+     */
+    private void measureRows(DatabaseWorker databaseWorker) throws Exception {
+        List<Integer> rows = sampleRows(shape.wideRows, shape.rows);
+        for (String name : new String[]{"firstPage", "firstPageCached"}) {
+            LatencyStats stats = begin(name);
+            for (int row : rows) {
+                long start = System.nanoTime();
+                List<KeyValue> page = databaseWorker.getColumns(TABLE, shape.key(row), shape.family(0), null,
+                        WideRowTableModel.PAGE_SIZE);
+                stats.record(System.nanoTime() - start, page.size());
+            }
+            stats.finish();
+        }
+    }
+
+    /**
+     * Постраничное чтение широких строк, как его делает таблица ячеек
+     */
+    private void measureWideRows(DatabaseWorker databaseWorker) throws Exception {
+        LatencyStats stats = begin("getColumns");
+        for (int row = 0; row < Math.min(shape.wideRows, shape.rows); row++) {
+            byte[] lastQualifier = null;
+            List<KeyValue> page;
+            do {
+                long start = System.nanoTime();
+                page = databaseWorker.getColumns(TABLE, shape.key(row), shape.family(0), lastQualifier,
+                        WideRowTableModel.PAGE_SIZE);
+                stats.record(System.nanoTime() - start, page.size());
+                if (!page.isEmpty())
+                    lastQualifier = page.get(page.size() - 1).getQualifier();
+            } while (page.size() == WideRowTableModel.PAGE_SIZE);
+        }
+        stats.finish();
+    }
+
+    /**
+     * Запись по одной ячейке, как после правки в таблице, и затем одной пачкой. Изменения проверяемые,
+     * как их создаёт таблица ячеек: ожидают значение и время, прочитанные до замера
+     */
+    private void measureCommits(DatabaseWorker databaseWorker) throws Exception {
+        List<Integer> rows = sampleRows(0, shape.rows);
+        List<CellEdit> edits = checkedEdits(databaseWorker, rows);
+        LatencyStats single = begin("commitEdit");
+        int conflicts = 0;
+        for (CellEdit edit : edits) {
+            long start = System.nanoTime();
+            conflicts += databaseWorker.commitEdits(Collections.singletonList(edit)).getConflicts().size();
+            single.record(System.nanoTime() - start, 1);
+        }
+        single.finish();
+        List<CellEdit> batch = checkedEdits(databaseWorker, rows);
+        LatencyStats batched = begin("commitBatch");
+        long start = System.nanoTime();
+        conflicts += databaseWorker.commitEdits(batch).getConflicts().size();
+        batched.record(System.nanoTime() - start, batch.size());
+        batched.finish();
+        if (conflicts > 0)
+            System.err.println("Unexpected conflicts: " + conflicts);
+    }
+
+    /**
+     * @return новые значения первой ячейки строк, ожидающие её текущее значение
+     */
+    private List<CellEdit> checkedEdits(DatabaseWorker databaseWorker, List<Integer> rows) throws IOException {
+        List<CellEdit> edits = new ArrayList<>(rows.size());
+        for (int row : rows) {
+            byte[] key = shape.key(row);
+            List<KeyValue> current = databaseWorker.getVersions(TABLE, key, shape.family(0), shape.qualifier(0),
+                    Long.MAX_VALUE, 1);
+            byte[] expectedValue = current.isEmpty() ? null : current.get(0).getValue();
+            long expectedTimestamp = current.isEmpty() ? 0L : current.get(0).getTimestamp();
+            edits.add(new CellEdit(TABLE, key, shape.family(0), shape.qualifier(0), value(), expectedValue,
+                    expectedTimestamp));
+        }
+        return edits;
+    }
+
+    /**
+     * @return до samples разных номеров строк из [from, to) в случайном порядке
+     */
+    private List<Integer> sampleRows(int from, int to) {
+        List<Integer> rows = new ArrayList<>();
+        for (int row = from; row < to; row++) {
+            rows.add(row);
+        }
+        Collections.shuffle(rows, random);
+        return rows.subList(0, Math.min(samples, rows.size()));
+    }
+}
@@ -0,0 +1,61 @@
+package brain;
+
+import java.nio.charset.Charset;
+import java.util.Random;
+
+/**
+ * Ключи и значения с распределением размеров, похожим на настоящие таблицы: в основном короткие,
+ * изредка длинные. Генератор детерминирован, поэтому прогоны разных версий читают одни и те же данные.
+ */
+final class Payloads {
+    static final int SEED = 20130529;
+    private static final String LATIN = "abcdefghijklmnopqrstuvwxyz0123456789_-:";
+    private static final String CYRILLIC = "абвгдеёжзийклмнопрстуфхцчшщъыьэюя";
+
+    private Payloads() {
+    }
+
+    /**
+     * @return размер ключа: 60% от 8 до 24 байт, 30% от 24 до 64, 10% от 64 до 256
+     */
+    static int keySize(Random random) {
+        int bucket = random.nextInt(10);
+        if (bucket < 6)
+            return 8 + random.nextInt(16);
+        if (bucket < 9)
+            return 24 + random.nextInt(40);
+        return 64 + random.nextInt(192);
+    }
+
+    /**
+     * @return размер значения: 70% от 8 до 128 байт, 25% до 2 КБ, 5% до 64 КБ
+     */
+    static int valueSize(Random random) {
+        int bucket = random.nextInt(20);
+        if (bucket < 14)
+            return 8 + random.nextInt(120);
+        if (bucket < 19)
+            return 128 + random.nextInt(1920);
+        return 2048 + random.nextInt(63 * 1024);
+    }
+
+    /**
+     * @param encoding кодировка или {@link Constants#HEX} - тогда произвольные байты
+     * @return байты текста примерно заданного размера, корректные для кодировки
+     */
+    static byte[] bytes(Random random, int size, String encoding) {
+        if (Constants.HEX.equals(encoding)) {
+            byte[] bytes = new byte[size];
+            random.nextBytes(bytes);
+            return bytes;
+        }
+        // кириллица есть только там, где кодировка её умеет
+        boolean cyrillic = !Constants.AHCII.equals(encoding);
+        StringBuilder text = new StringBuilder(size);
+        for (int i = 0; i < size; i++) {
+            String alphabet = cyrillic && random.nextInt(4) == 0 ? CYRILLIC : LATIN;
+            text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return text.toString().getBytes(Charset.forName(encoding));
+    }
+}
@@ -0,0 +1,47 @@
+package brain;
+
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сборка {@link Row} из прочитанной строки. Каждый вызов получает новый Result, как после настоящего Get:
+ * Result сам кэширует разобранные семейства, и повторный разбор одного объекта был бы нечестно быстрым.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RowBenchmark {
+    private static final byte[] FAMILY = Bytes.toBytes("f");
+
+    @Param({"1", "10", "100", "1000"})
+    public int columns;
+
+    private KeyValue[] cells;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(Payloads.SEED);
+        byte[] row = Payloads.bytes(random, Payloads.keySize(random), Constants.AHCII);
+        cells = new KeyValue[columns];
+        for (int i = 0; i < columns; i++) {
+            byte[] qualifier = Payloads.bytes(random, Payloads.keySize(random), Constants.UTF8);
+            cells[i] = new KeyValue(row, FAMILY, qualifier, 1L,
+                    Payloads.bytes(random, Payloads.valueSize(random), Constants.HEX));
+        }
+        Arrays.sort(cells, KeyValue.COMPARATOR);
+    }
+
+    @Benchmark
+    public Row fromResult() {
+        return Row.fromResult(new Result(cells), FAMILY);
+    }
+}
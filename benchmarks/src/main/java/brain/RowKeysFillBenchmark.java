@@ -0,0 +1,70 @@
+package brain;
+
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Заполнение списка ключей таблицы: постраничное чтение через {@link DatabaseWorker#getRowKeys} из таблицы
+ * в памяти, складывание в {@link RowKeyStore} и декодирование каждой страницы для показа, как это делает
+ * список строк. Swing и сеть не участвуют, поэтому видна только работа клиента.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RowKeysFillBenchmark {
+    private static final String TABLE = "benchmark";
+    private static final byte[] FAMILY = Bytes.toBytes("f");
+    private static final byte[] QUALIFIER = Bytes.toBytes("q");
+
+    @Param({"100000"})
+    public int rows;
+
+    @Param({Constants.UTF8, Constants.HEX})
+    public String encoding;
+
+    private DatabaseWorker databaseWorker;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(Payloads.SEED);
+        InMemoryTable table = new InMemoryTable(TABLE);
+        for (int i = 0; i < rows; i++) {
+            byte[] row = Payloads.bytes(random, Payloads.keySize(random), Constants.UTF8);
+            table.put(row, new KeyValue[]{new KeyValue(row, FAMILY, QUALIFIER, 1L,
+                    Payloads.bytes(random, Payloads.valueSize(random), Constants.HEX))});
+        }
+        databaseWorker = new DatabaseWorker(table.factory());
+    }
+
+    @TearDown
+    public void tearDown() {
+        databaseWorker.close();
+    }
+
+    @Benchmark
+    public int fill(Blackhole blackhole) throws Exception {
+        RowKeyStore store = new RowKeyStore();
+        byte[] startRow = HConstants.EMPTY_BYTE_ARRAY;
+        List<byte[]> page;
+        do {
+            page = databaseWorker.getRowKeys(TABLE, startRow, HConstants.EMPTY_BYTE_ARRAY, null, RowKeysListModel.PAGE_SIZE);
+            if (page.isEmpty())
+                break;
+            int from = store.size();
+            store.addAll(page);
+            blackhole.consume(store.snapshot().decode(from, store.size(), encoding));
+            startRow = DatabaseWorker.nextRow(page.get(page.size() - 1));
+        } while (page.size() == RowKeysListModel.PAGE_SIZE);
+        return store.size();
+    }
+}
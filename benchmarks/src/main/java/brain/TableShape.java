@@ -0,0 +1,85 @@
+package brain;
+
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.util.Map;
+
+/**
+ * Форма таблицы нагрузочного теста. Задаётся аргументами вида {@code rows=100000 keySize=16}.
+ * Ключи равномерно распределены по пространству ключей, поэтому регионы получаются одинаковыми.
+ */
+final class TableShape {
+    // нечётный множитель переставляет номера строк, не давая совпадений
+    private static final int KEY_MIX = 0x9E3779B1;
+    final int rows;
+    final int keySize;
+    final int families;
+    final int columns;
+    final int wideRows;
+    final int wideColumns;
+    final int versions;
+    final int valueSize;
+    final int regions;
+
+    TableShape(Map<String, String> arguments) {
+        rows = intArgument(arguments, "rows", 100000);
+        keySize = Math.max(8, intArgument(arguments, "keySize", 16));
+        families = intArgument(arguments, "families", 1);
+        columns = intArgument(arguments, "columns", 10);
+        wideRows = intArgument(arguments, "wideRows", 10);
+        wideColumns = intArgument(arguments, "wideColumns", 10000);
+        versions = intArgument(arguments, "versions", 1);
+        valueSize = intArgument(arguments, "valueSize", 100);
+        regions = intArgument(arguments, "regions", 4);
+    }
+
+    private static int intArgument(Map<String, String> arguments, String name, int defaultValue) {
+        String value = arguments.get(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    /**
+     * @return ключ строки: восемь шестнадцатеричных цифр перемешанного номера, дополненные до keySize
+     */
+    byte[] key(int row) {
+        StringBuilder key = new StringBuilder(keySize);
+        key.append(String.format("%08x", row * KEY_MIX));
+        while (key.length() < keySize) {
+            key.append((char) ('a' + key.length() % 26));
+        }
+        return Bytes.toBytes(key.toString());
+    }
+
+    /**
+     * @return границы регионов, делящие пространство ключей поровну
+     */
+    byte[][] splitKeys() {
+        byte[][] splits = new byte[Math.max(0, regions - 1)][];
+        for (int i = 1; i < regions; i++) {
+            splits[i - 1] = Bytes.toBytes(String.format("%08x", (int) ((1L << 32) * i / regions)));
+        }
+        return splits;
+    }
+
+    byte[] family(int index) {
+        return Bytes.toBytes("f" + index);
+    }
+
+    byte[] qualifier(int index) {
+        return Bytes.toBytes(String.format("q%06d", index));
+    }
+
+    /**
+     * @return число столбцов строки: первые wideRows строк широкие
+     */
+    int columnsOf(int row) {
+        return row < wideRows ? wideColumns : columns;
+    }
+
+    @Override
+    public String toString() {
+        return "rows=" + rows + " keySize=" + keySize + " families=" + families + " columns=" + columns
+                + " wideRows=" + wideRows + " wideColumns=" + wideColumns + " versions=" + versions
+                + " valueSize=" + valueSize + " regions=" + regions;
+    }
+}
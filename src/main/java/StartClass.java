@@ -1,9 +1,17 @@
 import ui.MainForm;
 
+import javax.swing.*;
+
 public class StartClass {
     public static void main(String[] args) {
-        MainForm ourFrame = new MainForm();
-        ourFrame.start();
-        ourFrame.setLocationRelativeTo(null);
+        // окно строится в потоке обработки событий, подключение к кластеру готовится в фоне
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                MainForm ourFrame = new MainForm();
+                ourFrame.start();
+                ourFrame.setLocationRelativeTo(null);
+            }
+        });
     }
 }
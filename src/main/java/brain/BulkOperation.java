@@ -0,0 +1,133 @@
+package brain;
+
+import org.apache.log4j.Logger;
+
+import javax.swing.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Длинная операция над таблицей целиком, например экспорт или импорт. Выполняется в собственном потоке,
+ * ход виден по счётчикам, которые UI опрашивает сам, а результат передаётся в {@link TaskCallback}
+ * в потоке обработки событий Swing. Остановленная или упавшая операция убирает незаконченный результат.
+ */
+public abstract class BulkOperation {
+    protected final Logger logger = Logger.getLogger(getClass());
+    protected final AtomicLong rows = new AtomicLong();
+    protected final AtomicLong cells = new AtomicLong();
+    protected final AtomicLong bytes = new AtomicLong();
+    private final String name;
+    private volatile boolean cancelled;
+    private volatile boolean finished;
+    private volatile Throwable failure;
+    private volatile long startTime;
+    private volatile long finishTime;
+
+    /**
+     * @param name имя операции, оно же имя её потока
+     */
+    protected BulkOperation(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Запускает операцию в отдельном потоке
+     *
+     * @param callback получатель результата в потоке обработки событий Swing;
+     *                 остановленная пользователем операция считается успешной
+     */
+    public void start(final TaskCallback<BulkOperation> callback) {
+        startTime = System.currentTimeMillis();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    execute();
+                } catch (Throwable e) {
+                    logger.error(e);
+                    failure = cancelled ? null : e;
+                }
+                if (cancelled || failure != null)
+                    discard();
+                finishTime = System.currentTimeMillis();
+                finished = true;
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (failure == null)
+                            callback.succeeded(BulkOperation.this);
+                        else
+                            callback.failed(failure);
+                    }
+                });
+            }
+        }, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Выполняет операцию, регулярно проверяя {@link #isCancelled()}
+     */
+    protected abstract void execute() throws Exception;
+
+    /**
+     * Убирает незаконченный результат остановленной или упавшей операции
+     */
+    protected abstract void discard();
+
+    /**
+     * @return выполненная доля работы от 0 до 1
+     */
+    public abstract double getProgress();
+
+    public String getName() {
+        return name;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public long getRows() {
+        return rows.get();
+    }
+
+    public long getCells() {
+        return cells.get();
+    }
+
+    /**
+     * @return объём обработанных ячеек в байтах
+     */
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    public long getElapsedMillis() {
+        return (finished ? finishTime : System.currentTimeMillis()) - startTime;
+    }
+
+    /**
+     * @return средняя скорость в байтах в секунду
+     */
+    public long getBytesPerSecond() {
+        long elapsed = getElapsedMillis();
+        return elapsed > 0 ? bytes.get() * 1000 / elapsed : 0;
+    }
+
+    /**
+     * @return средняя скорость в строках в секунду
+     */
+    public long getRowsPerSecond() {
+        long elapsed = getElapsedMillis();
+        return elapsed > 0 ? rows.get() * 1000 / elapsed : 0;
+    }
+}
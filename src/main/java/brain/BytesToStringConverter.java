@@ -1,7 +1,19 @@
 package brain;
 
 import java.io.UnsupportedEncodingException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Краткое описание класса:
@@ -12,22 +24,150 @@ import java.nio.charset.Charset;
  */
 public class BytesToStringConverter {
     final private static char[] hexArray = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F'};
+    // значение шестнадцатеричной цифры по коду символа, -1 - не цифра
+    final private static byte[] hexValues = new byte[128];
+    // кодировки ищутся по имени один раз, дальше берутся из кэша
+    final private static ConcurrentMap<String, Charset> charsets = new ConcurrentHashMap<>();
+    // у каждого потока свои декодеры и буфер символов, чтобы не создавать их на каждый ключ
+    final private static ThreadLocal<DecoderState> decoderState = new ThreadLocal<DecoderState>() {
+        @Override
+        protected DecoderState initialValue() {
+            return new DecoderState();
+        }
+    };
+
+    static {
+        for (int i = 0; i < hexValues.length; i++) {
+            hexValues[i] = (byte) Character.digit((char) i, 16);
+        }
+    }
 
     public static String toString(byte[] bytes, String encoding) throws UnsupportedEncodingException {
-        if (!encoding.toLowerCase().equals("hex"))
-            return new String(bytes, encoding);
-        else return toHex(bytes);
+        return toString(bytes, 0, bytes.length, encoding);
+    }
+
+    public static String toString(byte[] bytes, int offset, int length, String encoding) throws UnsupportedEncodingException {
+        if (isHex(encoding))
+            return toHex(bytes, offset, length);
+        return decode(charsetFor(encoding), bytes, offset, length);
+    }
+
+    /**
+     * Показывает значение ячейки назначенным кодеком. Значение, которое кодек не смог разобрать,
+     * показывается в шестнадцатеричном виде с именем кодека и причиной.
+     *
+     * @param codec    кодек или null, тогда значение показывается в кодировке encoding
+     * @param encoding выбранная в окне кодировка
+     */
+    public static String toString(byte[] bytes, ValueCodec codec, String encoding) throws UnsupportedEncodingException {
+        if (codec == null)
+            return toString(bytes, encoding);
+        try {
+            return codec.decode(bytes);
+        } catch (Exception e) {
+            return '<' + codec.getName() + ": " + e.getMessage() + "> " + toHex(bytes, 0, bytes.length);
+        }
+    }
+
+    /**
+     * Переводит в строки сразу страницу ключей: кодировка ищется один раз на страницу
+     *
+     * @return строки в порядке ключей
+     */
+    public static String[] toStrings(List<byte[]> keys, String encoding) throws UnsupportedEncodingException {
+        String[] strings = new String[keys.size()];
+        boolean hex = isHex(encoding);
+        Charset charset = hex ? null : charsetFor(encoding);
+        for (int i = 0; i < strings.length; i++) {
+            byte[] key = keys.get(i);
+            strings[i] = hex ? toHex(key, 0, key.length) : decode(charset, key, 0, key.length);
+        }
+        return strings;
+    }
+
+    /**
+     * Переводит в строки ключи [from, to), уложенные подряд в один массив
+     *
+     * @param arena   байты ключей подряд
+     * @param offsets начало каждого ключа в arena, конец ключа - начало следующего
+     * @param target  массив для строк, заполняется начиная с targetOffset
+     */
+    public static void toStrings(byte[] arena, int[] offsets, int from, int to, String encoding,
+                                 String[] target, int targetOffset) throws UnsupportedEncodingException {
+        boolean hex = isHex(encoding);
+        Charset charset = hex ? null : charsetFor(encoding);
+        for (int i = from; i < to; i++) {
+            int length = offsets[i + 1] - offsets[i];
+            target[targetOffset + i - from] = hex ? toHex(arena, offsets[i], length) : decode(charset, arena, offsets[i], length);
+        }
+    }
+
+    /**
+     * Пишет шестнадцатеричную запись байт в готовый массив символов
+     *
+     * @return количество записанных символов, всегда length * 2
+     */
+    public static int toHex(byte[] bytes, int offset, int length, char[] target, int targetOffset) {
+        int v;
+        for (int i = 0; i < length; i++) {
+            v = bytes[offset + i] & 0xFF;
+            target[targetOffset + i * 2] = hexArray[v >>> 4];
+            target[targetOffset + i * 2 + 1] = hexArray[v & 0x0F];
+        }
+        return length * 2;
     }
 
-    private static String toHex(byte[] bytes) {
-        char[] hexChars = new char[bytes.length * 2];
+    /**
+     * Дописывает шестнадцатеричную запись байт в буфер символов
+     *
+     * @throws BufferOverflowException если в буфере меньше length * 2 свободных символов
+     */
+    public static void toHex(byte[] bytes, int offset, int length, CharBuffer target) {
+        if (target.hasArray()) {
+            int position = target.position();
+            if (target.remaining() < length * 2)
+                throw new BufferOverflowException();
+            toHex(bytes, offset, length, target.array(), target.arrayOffset() + position);
+            target.position(position + length * 2);
+            return;
+        }
         int v;
-        for (int i = 0; i < bytes.length; i++) {
-            v = bytes[i] & 0xFF;
-            hexChars[i * 2] = hexArray[v >>> 4];
-            hexChars[i * 2 + 1] = hexArray[v & 0x0F];
+        for (int i = 0; i < length; i++) {
+            v = bytes[offset + i] & 0xFF;
+            target.put(hexArray[v >>> 4]).put(hexArray[v & 0x0F]);
+        }
+    }
+
+    private static String toHex(byte[] bytes, int offset, int length) {
+        char[] hexChars = decoderState.get().chars(length * 2).array();
+        return new String(hexChars, 0, toHex(bytes, offset, length, hexChars, 0));
+    }
+
+    private static String decode(Charset charset, byte[] bytes, int offset, int length) {
+        DecoderState state = decoderState.get();
+        CharsetDecoder decoder = state.decoder(charset);
+        CharBuffer chars = state.chars((int) Math.ceil(length * (double) decoder.maxCharsPerByte()) + 1);
+        decoder.reset();
+        decoder.decode(ByteBuffer.wrap(bytes, offset, length), chars, true);
+        decoder.flush(chars);
+        return new String(chars.array(), 0, chars.position());
+    }
+
+    private static boolean isHex(String encoding) {
+        return Constants.HEX.equalsIgnoreCase(encoding);
+    }
+
+    private static Charset charsetFor(String encoding) throws UnsupportedEncodingException {
+        Charset charset = charsets.get(encoding);
+        if (charset != null)
+            return charset;
+        try {
+            charset = Charset.forName(encoding);
+        } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+            throw new UnsupportedEncodingException(encoding);
         }
-        return new String(hexChars);
+        charsets.putIfAbsent(encoding, charset);
+        return charset;
     }
 
     public static byte[] toBytes(String string, String selectedEncoding) throws Exception {
@@ -40,15 +180,54 @@ public class BytesToStringConverter {
                 int len = string.length();
                 data = new byte[len / 2];
                 for (int i = 0; i < len; i += 2) {
-                    data[i / 2] = (byte) ((Character.digit(string.charAt(i), 16) << 4)
-                            + Character.digit(string.charAt(i + 1), 16));
+                    data[i / 2] = (byte) ((hexValue(string.charAt(i)) << 4) + hexValue(string.charAt(i + 1)));
                 }
                 break;
             default:
-                if (Charset.isSupported(selectedEncoding))
-                    data = string.getBytes(selectedEncoding);
-                else return null;
+                try {
+                    data = string.getBytes(charsetFor(selectedEncoding));
+                } catch (UnsupportedEncodingException e) {
+                    return null;
+                }
         }
         return data;
     }
+
+    private static int hexValue(char c) {
+        return c < hexValues.length ? hexValues[c] : -1;
+    }
+
+    /**
+     * Декодеры и буфер символов одного потока. Декодеры заменяют ошибочные байты,
+     * как это делает конструктор String.
+     */
+    private static final class DecoderState {
+        // больший буфер жил бы в потоке (например, в потоке событий Swing) после одного большого значения
+        private static final int MAX_REUSED_CHARS = 64 * 1024;
+        private final Map<Charset, CharsetDecoder> decoders = new HashMap<>();
+        private CharBuffer chars = CharBuffer.allocate(256);
+
+        private CharsetDecoder decoder(Charset charset) {
+            CharsetDecoder decoder = decoders.get(charset);
+            if (decoder == null) {
+                decoder = charset.newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+                decoders.put(charset, decoder);
+            }
+            return decoder;
+        }
+
+        /**
+         * @return очищенный буфер не меньше заданной ёмкости; больше {@link #MAX_REUSED_CHARS} - временный
+         */
+        private CharBuffer chars(int capacity) {
+            if (capacity > MAX_REUSED_CHARS)
+                return CharBuffer.allocate(capacity);
+            if (chars.capacity() < capacity)
+                chars = CharBuffer.allocate(Math.min(MAX_REUSED_CHARS, Math.max(capacity, chars.capacity() * 2)));
+            chars.clear();
+            return chars;
+        }
+    }
 }
@@ -0,0 +1,85 @@
+package brain;
+
+import java.util.Arrays;
+
+/**
+ * Новое значение одной ячейки, ещё не записанное в таблицу. Изменение помнит значение и время ячейки,
+ * которые видел пользователь, и записывается, только если ячейка с тех пор не менялась.
+ */
+public final class CellEdit {
+    private final String tableName;
+    private final byte[] row;
+    private final byte[] family;
+    private final byte[] qualifier;
+    private final byte[] value;
+    private final byte[] expectedValue;
+    private final long expectedTimestamp;
+
+    /**
+     * @param expectedValue     значение, которое видел пользователь, null - ячейки не было
+     * @param expectedTimestamp время этого значения, 0 - ячейки не было
+     */
+    public CellEdit(String tableName, byte[] row, byte[] family, byte[] qualifier, byte[] value,
+                    byte[] expectedValue, long expectedTimestamp) {
+        this.tableName = tableName;
+        this.row = row;
+        this.family = family;
+        this.qualifier = qualifier;
+        this.value = value;
+        this.expectedValue = expectedValue;
+        this.expectedTimestamp = expectedTimestamp;
+    }
+
+    /**
+     * @return то же изменение, которое ожидает уже новое значение ячейки
+     */
+    public CellEdit rebase(byte[] currentValue, long currentTimestamp) {
+        return new CellEdit(tableName, row, family, qualifier, value, currentValue, currentTimestamp);
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public byte[] getRow() {
+        return row;
+    }
+
+    public byte[] getFamily() {
+        return family;
+    }
+
+    public byte[] getQualifier() {
+        return qualifier;
+    }
+
+    public byte[] getValue() {
+        return value;
+    }
+
+    public byte[] getExpectedValue() {
+        return expectedValue;
+    }
+
+    public long getExpectedTimestamp() {
+        return expectedTimestamp;
+    }
+
+    /**
+     * @return правит ли изменение ту же ячейку
+     */
+    public boolean sameCell(String tableName, byte[] row, byte[] family, byte[] qualifier) {
+        return this.tableName.equals(tableName) && Arrays.equals(this.row, row)
+                && Arrays.equals(this.family, family) && Arrays.equals(this.qualifier, qualifier);
+    }
+
+    @Override
+    public String toString() {
+        return "CellEdit{" +
+                "tableName='" + tableName + '\'' +
+                ", row=" + Arrays.toString(row) +
+                ", family=" + Arrays.toString(family) +
+                ", qualifier=" + Arrays.toString(qualifier) +
+                '}';
+    }
+}
@@ -0,0 +1,86 @@
+package brain;
+
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Переводит ячейки в текст для текстовых форматов экспорта и обратно при импорте: ключ строки, семейство и столбец -
+ * в выбранной кодировке, значение - выбранным кодеком или кодеком, назначенным столбцу в {@link ValueCodecRegistry}.
+ * Части ячейки читаются прямо из её буфера без копирования.
+ */
+public class CellText {
+    private final ValueCodecRegistry registry;
+    private final String tableName;
+    private final ValueCodec codec;
+    private final String encoding;
+
+    /**
+     * @param codec кодек всех значений или null, тогда берутся кодеки, назначенные столбцам
+     */
+    public CellText(ValueCodecRegistry registry, String tableName, ValueCodec codec, String encoding) {
+        this.registry = registry;
+        this.tableName = tableName;
+        this.codec = codec;
+        this.encoding = encoding;
+    }
+
+    public String row(KeyValue cell) throws UnsupportedEncodingException {
+        return BytesToStringConverter.toString(cell.getBuffer(), cell.getRowOffset(), cell.getRowLength(), encoding);
+    }
+
+    public String family(KeyValue cell) throws UnsupportedEncodingException {
+        return BytesToStringConverter.toString(cell.getBuffer(), cell.getFamilyOffset(), cell.getFamilyLength(), encoding);
+    }
+
+    public String qualifier(KeyValue cell) throws UnsupportedEncodingException {
+        return BytesToStringConverter.toString(cell.getBuffer(), cell.getQualifierOffset(), cell.getQualifierLength(),
+                encoding);
+    }
+
+    public String value(KeyValue cell) throws UnsupportedEncodingException {
+        ValueCodec valueCodec = codec != null ? codec : registry.resolve(tableName,
+                Bytes.toString(cell.getBuffer(), cell.getFamilyOffset(), cell.getFamilyLength()),
+                Bytes.toString(cell.getBuffer(), cell.getQualifierOffset(), cell.getQualifierLength()));
+        if (valueCodec == null)
+            return BytesToStringConverter.toString(cell.getBuffer(), cell.getValueOffset(), cell.getValueLength(), encoding);
+        return BytesToStringConverter.toString(cell.getValue(), valueCodec, encoding);
+    }
+
+    /**
+     * Собирает ячейку из текста записи импорта
+     *
+     * @param timestamp время ячейки, {@link HConstants#LATEST_TIMESTAMP} - время записи
+     * @throws IOException если текст не переводится в байты
+     */
+    public KeyValue toCell(String row, String family, String qualifier, long timestamp, String value) throws IOException {
+        byte[] familyBytes = toBytes(family);
+        byte[] qualifierBytes = toBytes(qualifier);
+        ValueCodec valueCodec = codec != null ? codec
+                : registry.resolve(tableName, Bytes.toString(familyBytes), Bytes.toString(qualifierBytes));
+        byte[] valueBytes;
+        try {
+            valueBytes = valueCodec != null ? valueCodec.encode(value) : toBytes(value);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Cannot encode value of " + family + ':' + qualifier + ": " + e.getMessage(), e);
+        }
+        return new KeyValue(toBytes(row), familyBytes, qualifierBytes, timestamp, valueBytes);
+    }
+
+    private byte[] toBytes(String text) throws IOException {
+        byte[] bytes;
+        try {
+            bytes = BytesToStringConverter.toBytes(text, encoding);
+        } catch (Exception e) {
+            throw new IOException("Cannot convert '" + text + "' to " + encoding + ": " + e.getMessage(), e);
+        }
+        if (bytes == null)
+            throw new IOException("Unsupported encoding " + encoding);
+        return bytes;
+    }
+}
@@ -0,0 +1,72 @@
+package brain;
+
+import com.yammer.metrics.core.TimerContext;
+import javax.swing.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Передаёт в поток обработки событий Swing порции данных, подготовленные фоновым потоком.
+ * Вместо отдельного invokeLater на каждый элемент порции копятся в очереди и забираются
+ * таймером не чаще {@link #MAX_FRAMES_PER_SECOND} раз в секунду, сколько бы их ни пришло.
+ *
+ * @param <T> тип элемента порции
+ */
+public class ChunkPublisher<T> {
+    public static final int MAX_FRAMES_PER_SECOND = 25;
+    private final Queue<List<T>> chunks = new ConcurrentLinkedQueue<>();
+    private final Consumer<T> consumer;
+    private final Timer timer;
+
+    public ChunkPublisher(final Consumer<T> consumer) {
+        this.consumer = consumer;
+        timer = new Timer(1000 / MAX_FRAMES_PER_SECOND, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                drain();
+            }
+        });
+        timer.setCoalesce(true);
+    }
+
+    /**
+     * Ставит порцию в очередь на публикацию. Может вызываться из любого потока.
+     */
+    public void offer(List<T> chunk) {
+        chunks.add(chunk);
+        if (!timer.isRunning())
+            timer.start();
+    }
+
+    private void drain() {
+        TimerContext frame = Diagnostics.timePublish();
+        try {
+            List<T> chunk;
+            while ((chunk = chunks.poll()) != null) {
+                consumer.publish(chunk);
+            }
+            timer.stop();
+            // порция могла прийти между опустошением очереди и остановкой таймера
+            if (!chunks.isEmpty())
+                timer.start();
+            consumer.frameFinished();
+        } finally {
+            frame.stop();
+        }
+    }
+
+    /**
+     * Получатель порций, все методы вызываются в потоке обработки событий Swing
+     */
+    public interface Consumer<T> {
+        void publish(List<T> chunk);
+
+        /**
+         * Вызывается один раз после публикации всех порций, накопившихся к очередному кадру
+         */
+        void frameFinished();
+    }
+}
@@ -0,0 +1,25 @@
+package brain;
+
+import java.util.List;
+
+/**
+ * Итог записи журнала изменений: записанные изменения и конфликты. Правки одной строки записываются
+ * вместе: если в строке есть конфликт, не записывается ни одна её правка, и все они остаются в журнале.
+ */
+public final class CommitResult {
+    private final List<CellEdit> committed;
+    private final List<EditConflict> conflicts;
+
+    public CommitResult(List<CellEdit> committed, List<EditConflict> conflicts) {
+        this.committed = committed;
+        this.conflicts = conflicts;
+    }
+
+    public List<CellEdit> getCommitted() {
+        return committed;
+    }
+
+    public List<EditConflict> getConflicts() {
+        return conflicts;
+    }
+}
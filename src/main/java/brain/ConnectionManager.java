@@ -0,0 +1,194 @@
+package brain;
+
+import com.yammer.metrics.core.TimerContext;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.client.*;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.Pair;
+import org.apache.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Владеет одним соединением с кластером на текущую конфигурацию и пулом таблиц поверх него.
+ * Таблицы, полученные через {@link #getTable(String)}, нужно закрывать - это возвращает их в пул.
+ * При смене настроек подключения соединение сбрасывается и создаётся заново при следующем обращении.
+ */
+public class ConnectionManager implements Closeable {
+    public static final String TABLE_POOL_SIZE = "hbaseexplorer.table.pool.size";
+    private static final int DEFAULT_TABLE_POOL_SIZE = 16;
+    private final Logger logger = Logger.getLogger(ConnectionManager.class);
+    private final Configuration configuration;
+    private final ExecutorService tablesBatchPool = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "htable-batch");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private HConnection connection;
+    private HTablePool tablePool;
+    private HBaseAdmin admin;
+    private HTableInterfaceFactory tableFactory;
+
+    public ConnectionManager(Configuration configuration) {
+        this.configuration = configuration;
+    }
+
+    /**
+     * @return общее соединение, создаётся при первом обращении
+     */
+    public synchronized HConnection getConnection() throws IOException {
+        if (connection == null || connection.isClosed()) {
+            TimerContext timer = Diagnostics.time("connect");
+            try {
+                connection = HConnectionManager.createConnection(configuration);
+            } finally {
+                timer.stop();
+            }
+            final HConnection poolConnection = connection;
+            tablePool = new HTablePool(configuration, configuration.getInt(TABLE_POOL_SIZE, DEFAULT_TABLE_POOL_SIZE),
+                    new HTableInterfaceFactory() {
+                        @Override
+                        public HTableInterface createHTableInterface(Configuration config, byte[] tableName) {
+                            try {
+                                return new HTable(tableName, poolConnection, tablesBatchPool);
+                            } catch (IOException e) {
+                                throw new RuntimeException(e);
+                            }
+                        }
+
+                        @Override
+                        public void releaseHTableInterface(HTableInterface table) throws IOException {
+                            table.close();
+                        }
+                    });
+        }
+        return connection;
+    }
+
+    /**
+     * Соединение и пул берутся под блокировкой, а сама таблица создаётся вне её: создание HTable ищет
+     * регионы в META и не должно задерживать другие потоки
+     *
+     * @param tableName имя таблицы
+     * @return таблица из пула, после работы её нужно закрыть
+     */
+    public HTableInterface getTable(String tableName) throws IOException {
+        HTableInterfaceFactory factory;
+        HTablePool pool = null;
+        synchronized (this) {
+            factory = tableFactory;
+            if (factory == null) {
+                getConnection();
+                pool = tablePool;
+            }
+        }
+        if (factory != null)
+            return factory.createHTableInterface(configuration, Bytes.toBytes(tableName));
+        return pool.getTable(tableName);
+    }
+
+    /**
+     * @return общий пул потоков пакетных операций таблиц; задачи в нём должны брать себе отдельные таблицы
+     */
+    ExecutorService getBatchPool() {
+        return tablesBatchPool;
+    }
+
+    /**
+     * Подменяет таблицы пула таблицами из фабрики, соединение с кластером для них не открывается
+     */
+    synchronized void setTableFactory(HTableInterfaceFactory tableFactory) {
+        this.tableFactory = tableFactory;
+    }
+
+    /**
+     * @return администратор кластера поверх общего соединения; закрывать его не нужно
+     */
+    public synchronized HBaseAdmin getAdmin() throws IOException {
+        if (admin == null || admin.getConnection() != getConnection())
+            admin = new HBaseAdmin(getConnection());
+        return admin;
+    }
+
+    /**
+     * Читает границы регионов из META при каждом вызове, поэтому вызывающие кэшируют результат
+     *
+     * @param tableName имя таблицы
+     * @return начальные и конечные ключи регионов таблицы
+     */
+    public Pair<byte[][], byte[][]> getStartEndKeys(String tableName) throws IOException {
+        HTable table = getHTable(tableName);
+        try {
+            return table.getStartEndKeys();
+        } finally {
+            table.close();
+        }
+    }
+
+    /**
+     * @return таблица вне пула поверх общего соединения для операций, которых нет в HTableInterface;
+     * после работы её нужно закрыть
+     */
+    public HTable getHTable(String tableName) throws IOException {
+        return new HTable(Bytes.toBytes(tableName), getConnection(), tablesBatchPool);
+    }
+
+    /**
+     * Таблица вне пула для буферизованной записи. Put'ы, которые не удалось отправить, выбрасываются из буфера,
+     * а сам буфер закрывается вместе с таблицей и не достаётся следующему пользователю пула.
+     * Закрытие отправляет остаток буфера; чтобы его не писать, сначала вызовите {@link #discardWriteBuffer}.
+     */
+    public HTableInterface getWriteTable(String tableName, long writeBufferSize) throws IOException {
+        HTableInterface table;
+        synchronized (this) {
+            table = tableFactory == null ? null : tableFactory.createHTableInterface(configuration, Bytes.toBytes(tableName));
+        }
+        if (table == null) {
+            HTable hTable = getHTable(tableName);
+            hTable.setAutoFlush(false, true);
+            table = hTable;
+        } else {
+            table.setAutoFlush(false);
+        }
+        table.setWriteBufferSize(writeBufferSize);
+        return table;
+    }
+
+    /**
+     * Выбрасывает неотправленные Put'ы из буфера таблицы {@link #getWriteTable}, чтобы close() их не записал
+     */
+    public static void discardWriteBuffer(HTableInterface table) {
+        if (table instanceof HTable)
+            ((HTable) table).getWriteBuffer().clear();
+    }
+
+    /**
+     * Закрывает пул таблиц и соединение. Следующее обращение откроет новое соединение с текущей конфигурацией.
+     */
+    public synchronized void invalidate() {
+        try {
+            if (tablePool != null)
+                tablePool.close();
+            if (connection != null)
+                connection.close();
+        } catch (IOException e) {
+            logger.error(e);
+        }
+        tablePool = null;
+        connection = null;
+        admin = null;
+    }
+
+    @Override
+    public void close() {
+        invalidate();
+        tablesBatchPool.shutdown();
+    }
+}
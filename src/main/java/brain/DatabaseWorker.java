@@ -1,19 +1,33 @@
 package brain;
 
+import com.yammer.metrics.core.TimerContext;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.ClusterStatus;
 import org.apache.hadoop.hbase.HBaseConfiguration;
 import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.HServerLoad;
 import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.ServerName;
 import org.apache.hadoop.hbase.client.*;
-import org.apache.hadoop.hbase.filter.FirstKeyOnlyFilter;
+import org.apache.hadoop.hbase.filter.ColumnPaginationFilter;
+import org.apache.hadoop.hbase.filter.ColumnRangeFilter;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.PageFilter;
 import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.MD5Hash;
+import org.apache.hadoop.hbase.util.Pair;
 import org.apache.log4j.Logger;
 
-import javax.swing.*;
+import java.io.File;
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
+import java.io.InterruptedIOException;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.prefs.BackingStoreException;
 import java.util.prefs.Preferences;
 
@@ -26,9 +40,104 @@ import java.util.prefs.Preferences;
  */
 public class DatabaseWorker {
     private final Configuration configuration = HBaseConfiguration.create();
+    public static final String SCAN_THREADS = "hbaseexplorer.scan.threads";
+    private static final int DEFAULT_SCAN_THREADS = 8;
+    public static final String WRITE_BUFFER_SIZE = "hbase.client.write.buffer";
+    private static final long DEFAULT_WRITE_BUFFER_SIZE = 2L * 1024 * 1024;
+    public static final String BULK_LOAD_DIR = "hbaseexplorer.bulkload.dir";
+    private static final String DEFAULT_BULK_LOAD_DIR = "/tmp/hbaseexplorer-bulkload";
+    private static final int TASK_THREADS = 4;
+    private static final int CHECKED_COMMIT_THREADS = 8;
+    private static final long ROW_CACHE_BYTES = 64L * 1024 * 1024;
+    private static final long METADATA_CACHE_BYTES = 1024L * 1024;
+    private static final long CACHE_TTL_MS = TimeUnit.MINUTES.toMillis(5);
+    private static final long STATISTICS_CACHE_BYTES = 1024L * 1024;
+    private static final long REGION_KEYS_CACHE_BYTES = 1024L * 1024;
+    private static final int SAMPLE_REGIONS = 10;
+    private static final int SAMPLE_ROWS_PER_REGION = 50;
+    private static final String TABLE_NAMES_KEY = "";
+    private static final String SCAN_PROFILE_PREFIX = "scanProfile.";
+    private static final String VALUE_CODECS_NODE = "valueCodecs";
     private final Logger logger = Logger.getLogger(DatabaseWorker.class);
     private final Preferences preferences = Preferences.userNodeForPackage(DatabaseWorker.class);
-    private Map<String, Map<String, Map<String, Row>>> cache = new ConcurrentHashMap<>();
+    private final WeightedCache<String, String[]> metadataCache = new WeightedCache<>(METADATA_CACHE_BYTES, CACHE_TTL_MS,
+            new WeightedCache.Weigher<String[]>() {
+                @Override
+                public long weigh(String[] names) {
+                    long weight = 16L + 8L * names.length;
+                    for (String name : names) {
+                        weight += 40L + 2L * name.length();
+                    }
+                    return weight;
+                }
+            });
+    // первые страницы столбцов строк, их читает таблица ячеек при выборе строки
+    private final WeightedCache<RowCacheKey, ColumnPage> rowCache = new WeightedCache<>(ROW_CACHE_BYTES, CACHE_TTL_MS,
+            new WeightedCache.Weigher<ColumnPage>() {
+                @Override
+                public long weigh(ColumnPage page) {
+                    long weight = 64L;
+                    for (KeyValue cell : page.cells) {
+                        weight += 48L + cell.getLength();
+                    }
+                    return weight;
+                }
+            });
+    private final WeightedCache<String, TableStatistics> statisticsCache = new WeightedCache<>(STATISTICS_CACHE_BYTES,
+            CACHE_TTL_MS, new WeightedCache.Weigher<TableStatistics>() {
+                @Override
+                public long weigh(TableStatistics statistics) {
+                    long weight = 64L;
+                    for (RegionStatistics region : statistics.getRegions()) {
+                        weight += 160L + 2L * region.getName().length()
+                                + region.getStartKey().length + region.getEndKey().length;
+                    }
+                    return weight;
+                }
+            });
+    // границы регионов таблиц; после разделения региона устаревшие границы лишь уменьшают параллельность чтения,
+    // потому что сканирование само переходит через границы регионов
+    private final WeightedCache<String, Pair<byte[][], byte[][]>> regionKeysCache = new WeightedCache<>(
+            REGION_KEYS_CACHE_BYTES, CACHE_TTL_MS, new WeightedCache.Weigher<Pair<byte[][], byte[][]>>() {
+                @Override
+                public long weigh(Pair<byte[][], byte[][]> keys) {
+                    long weight = 64L;
+                    for (int i = 0; i < keys.getFirst().length; i++) {
+                        weight += 48L + keys.getFirst()[i].length + keys.getSecond()[i].length;
+                    }
+                    return weight;
+                }
+            });
+    private final ConnectionManager connectionManager = new ConnectionManager(configuration);
+    private final TaskExecutor tasks = new TaskExecutor("hbase-task", TASK_THREADS);
+    private final ValueCodecRegistry valueCodecs = new ValueCodecRegistry(preferences.node(VALUE_CODECS_NODE));
+    private ThreadPoolExecutor regionScanPool;
+
+    public DatabaseWorker() {
+        Diagnostics.registerCache("metadataCache", metadataCache);
+        Diagnostics.registerCache("rowCache", rowCache);
+        Diagnostics.registerCache("statisticsCache", statisticsCache);
+        Diagnostics.registerCache("regionKeysCache", regionKeysCache);
+    }
+
+    /**
+     * Работает с таблицами из фабрики вместо кластера, например с таблицами в памяти для бенчмарков
+     */
+    DatabaseWorker(HTableInterfaceFactory tableFactory) {
+        this();
+        connectionManager.setTableFactory(tableFactory);
+    }
+
+    /**
+     * Подключается с переданными настройками поверх настроек по умолчанию, не трогая сохранённые в preferences;
+     * например к миникластеру нагрузочного теста
+     */
+    DatabaseWorker(Configuration settings) {
+        this();
+        for (Map.Entry<String, String> setting : settings) {
+            configuration.set(setting.getKey(), setting.getValue());
+        }
+    }
 
     public String getSettingValue(String key) {
         return configuration.get(key);
@@ -38,6 +147,8 @@ public class DatabaseWorker {
         logger.trace("Creating DatabaseWorker");
         try {
             for (String key : preferences.keys()) {
+                if (key.startsWith(SCAN_PROFILE_PREFIX))
+                    continue;
                 configuration.set(key, preferences.get(key, null));
             }
         } catch (BackingStoreException e) {
@@ -53,76 +164,478 @@ public class DatabaseWorker {
      */
     public void setSetting(String key, String value) {
         configuration.set(key, value);
-        cache = new HashMap<>();
+        invalidateCaches();
         preferences.put(key, value);
+        if (SCAN_THREADS.equals(key)) {
+            resizeRegionScanPool();
+        } else if (!WRITE_BUFFER_SIZE.equals(key) && !BULK_LOAD_DIR.equals(key)) {
+            // настройки подключения меняются - старое соединение и список таблиц больше не годятся
+            connectionManager.invalidate();
+            TableNamesCache.clear();
+        }
     }
 
-    public synchronized Row getRow(String tableName, byte[] rowName, byte[] familyName) throws IOException, InterruptedException {
-        while (cache == null || tableName == null) {
-            Thread.sleep(100L);
+    private synchronized void resizeRegionScanPool() {
+        if (regionScanPool == null)
+            return;
+        int threads = getScanThreads();
+        if (threads > regionScanPool.getMaximumPoolSize()) {
+            regionScanPool.setMaximumPoolSize(threads);
+            regionScanPool.setCorePoolSize(threads);
+        } else {
+            regionScanPool.setCorePoolSize(threads);
+            regionScanPool.setMaximumPoolSize(threads);
         }
-        HTable hTable = new HTable(configuration, tableName);
-        List<String> qualifiersNames = new LinkedList<>();
-        List<byte[]> data = new LinkedList<>();
+    }
 
-        Get get = new Get(rowName);
-        get.addFamily(familyName);
-        Result result = hTable.get(get);
-        if (result.getFamilyMap(familyName) == null)
-            return null;
-        for (byte[] bytes : result.getFamilyMap(familyName).keySet()) {
-            qualifiersNames.add(Bytes.toString(bytes));
-            data.add(result.getValue(familyName, bytes));
+    /**
+     * @param tableName имя таблицы
+     * @return профиль сканирования таблицы, по умолчанию {@link ScanProfile#BROWSE}
+     */
+    public ScanProfile getScanProfile(String tableName) {
+        return ScanProfile.parse(preferences.get(scanProfileKey(tableName), null));
+    }
+
+    /**
+     * Сохраняет профиль сканирования таблицы в preference рядом с остальными настройками
+     *
+     * @param tableName имя таблицы
+     * @param profile   профиль
+     * @throws IOException если профиль не удалось сохранить
+     */
+    public void setScanProfile(String tableName, ScanProfile profile) throws IOException {
+        try {
+            preferences.put(scanProfileKey(tableName), profile.toString());
+            preferences.flush();
+        } catch (BackingStoreException | IllegalArgumentException e) {
+            throw new IOException("Cannot save scan profile for " + tableName, e);
+        }
+    }
+
+    /**
+     * @return ключ профиля; для длинных имён таблиц, не влезающих в {@link Preferences#MAX_KEY_LENGTH}, -
+     * MD5 имени
+     */
+    private static String scanProfileKey(String tableName) {
+        String key = SCAN_PROFILE_PREFIX + tableName;
+        if (key.length() <= Preferences.MAX_KEY_LENGTH)
+            return key;
+        return SCAN_PROFILE_PREFIX + MD5Hash.getMD5AsHex(Bytes.toBytes(tableName));
+    }
+
+    /**
+     * @return общий пул фоновых задач, через него UI выполняет все обращения к базе
+     */
+    public TaskExecutor getTasks() {
+        return tasks;
+    }
+
+    /**
+     * @return кодеки значений, назначенные таблицам, семействам и столбцам
+     */
+    public ValueCodecRegistry getValueCodecs() {
+        return valueCodecs;
+    }
+
+    /**
+     * Читает страницу столбцов семейства одной строки: не больше limit столбцов, идущих после afterQualifier.
+     * Широкие строки читаются так по частям, не вытягивая всё семейство одним Get.
+     * Первая страница запоминается в кэше строк, поэтому повторный выбор строки не обращается к кластеру.
+     *
+     * @param afterQualifier последний уже прочитанный столбец или null для чтения с начала
+     * @param limit          максимальное количество столбцов
+     * @return ячейки в порядке столбцов, меньше limit - семейство закончилось
+     */
+    public List<KeyValue> getColumns(String tableName, byte[] rowName, byte[] familyName, byte[] afterQualifier,
+                                     int limit) throws IOException {
+        TimerContext timer = Diagnostics.time("getColumns");
+        try {
+            RowCacheKey cacheKey = afterQualifier == null ? new RowCacheKey(tableName, rowName, familyName) : null;
+            if (cacheKey != null) {
+                ColumnPage cached = rowCache.get(cacheKey);
+                if (cached != null && cached.covers(limit))
+                    return cached.first(limit);
+            }
+            Get get = new Get(rowName);
+            get.addFamily(familyName);
+            get.setFilter(new FilterList(
+                    new ColumnRangeFilter(afterQualifier, false, null, false),
+                    new ColumnPaginationFilter(limit, 0)));
+            Result result;
+            HTableInterface hTable = connectionManager.getTable(tableName);
+            try {
+                result = hTable.get(get);
+            } finally {
+                hTable.close();
+            }
+            Diagnostics.rpc();
+            Diagnostics.received(result);
+            KeyValue[] raw = result.raw();
+            List<KeyValue> cells = raw == null ? Collections.<KeyValue>emptyList()
+                    : Collections.unmodifiableList(Arrays.asList(raw));
+            if (cacheKey != null)
+                rowCache.put(cacheKey, new ColumnPage(cells, limit));
+            return cells;
+        } finally {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Читает страницу столбцов в общем пуле задач с интерактивным приоритетом, не блокируя вызывающий поток.
+     * Результат передаётся в callback в потоке обработки событий Swing, если к этому моменту чтение не отменено,
+     * поэтому отменённые устаревшие чтения никогда не доходят до UI, а ещё не начатые не идут к кластеру.
+     *
+     * @return чтение, которое можно отменить, когда выделение в UI ушло на другую строку
+     * @see #getColumns
+     */
+    public Future<List<KeyValue>> getColumnsAsync(final String tableName, final byte[] rowName, final byte[] familyName,
+                                                  final byte[] afterQualifier, final int limit,
+                                                  TaskCallback<List<KeyValue>> callback) {
+        return tasks.submit(TaskExecutor.Priority.INTERACTIVE, new Callable<List<KeyValue>>() {
+            @Override
+            public List<KeyValue> call() throws Exception {
+                return getColumns(tableName, rowName, familyName, afterQualifier, limit);
+            }
+        }, callback);
+    }
+
+    /**
+     * Читает страницу истории версий ячейки или всех столбцов семейства строки, от новых к старым.
+     * Следующая страница читается с временем последней версии страницы в качестве before.
+     *
+     * @param qualifier       столбец или null - все столбцы семейства
+     * @param beforeTimestamp читаются версии строго старше этого времени, {@link Long#MAX_VALUE} - с самой новой
+     * @param limit           желаемое количество версий; версии с тем же временем, что и последняя,
+     *                        попадают в страницу целиком, поэтому она может оказаться чуть больше
+     * @return версии по убыванию времени, пустой список - версий больше нет
+     */
+    public List<KeyValue> getVersions(String tableName, byte[] rowName, byte[] familyName, byte[] qualifier,
+                                      long beforeTimestamp, int limit) throws IOException {
+        TimerContext timer = Diagnostics.time("getVersions");
+        try {
+            Get get = new Get(rowName);
+            if (qualifier == null)
+                get.addFamily(familyName);
+            else
+                get.addColumn(familyName, qualifier);
+            get.setTimeRange(0, beforeTimestamp);
+            // каждый столбец отдаёт не больше limit версий, этого хватает на страницу из limit самых новых
+            get.setMaxVersions(limit);
+            get.setCacheBlocks(false);
+            Result result;
+            HTableInterface hTable = connectionManager.getTable(tableName);
+            try {
+                result = hTable.get(get);
+            } finally {
+                hTable.close();
+            }
+            Diagnostics.rpc();
+            Diagnostics.received(result);
+            KeyValue[] raw = result.raw();
+            if (raw == null || raw.length == 0)
+                return Collections.emptyList();
+            List<KeyValue> versions = new ArrayList<>(Arrays.asList(raw));
+            Collections.sort(versions, new Comparator<KeyValue>() {
+                @Override
+                public int compare(KeyValue o1, KeyValue o2) {
+                    if (o1.getTimestamp() != o2.getTimestamp())
+                        return o1.getTimestamp() > o2.getTimestamp() ? -1 : 1;
+                    return Bytes.compareTo(o1.getQualifier(), o2.getQualifier());
+                }
+            });
+            int size = Math.min(limit, versions.size());
+            while (size < versions.size() && versions.get(size).getTimestamp() == versions.get(size - 1).getTimestamp()) {
+                size++;
+            }
+            return versions.subList(0, size);
+        } finally {
+            timer.stop();
         }
-        return new Row(qualifiersNames.toArray(new String[qualifiersNames.size()]), data);
     }
 
     /**
      * @return имена всех таблиц в базе данных
      */
     public String[] getTableNames() throws IOException {
-        if (cache.size() != 0) {
-            return cache.keySet().toArray(new String[cache.keySet().size()]);
-        }
-        HBaseAdmin hBaseAdmin = new HBaseAdmin(configuration);
-        HTableDescriptor[] hTableDescriptors = hBaseAdmin.listTables();
-        String[] names = new String[hTableDescriptors.length];
-        for (int i = 0; i < hTableDescriptors.length; ++i) {
-            names[i] = hTableDescriptors[i].getNameAsString();
-        }
-        for (String name : names) {
-            cache.put(name, new HashMap<String, Map<String, Row>>());
-        }
-        return names;
-    }
-
-    public void fillRowsToListModel(String tableName, final JProgressBar progressBar, final DefaultListModel<String> hexListModel, final DefaultListModel<String> ahciiListModel, final DefaultListModel<String> cp1251ListModel, final DefaultListModel<String> utf8ListModel) throws IOException {
-        progressBar.setVisible(true);
-        progressBar.setValue(0);
-        progressBar.setMaximum(2);
-        HTable table = new HTable(configuration, tableName);
-        Scan scan = new Scan();
-        scan.setMaxVersions();
-        scan.setFilter(new FirstKeyOnlyFilter());
-        ResultScanner scanner = table.getScanner(scan);
-        for (final Result rr : scanner) {
-            SwingUtilities.invokeLater(new Runnable() {
-                public void run() {
-                    try {
-                        hexListModel.addElement(BytesToStringConverter.toString(rr.getRow(), Constants.HEX));
-                        ahciiListModel.addElement(BytesToStringConverter.toString(rr.getRow(), Constants.AHCII));
-                        cp1251ListModel.addElement(BytesToStringConverter.toString(rr.getRow(), Constants.CP1251));
-                        utf8ListModel.addElement(Bytes.toString(rr.getRow()));
-                        int max = progressBar.getMaximum();
-                        progressBar.setMaximum(max + max / 10);
-                        progressBar.setValue(max);
-                    } catch (UnsupportedEncodingException e) {
-                        logger.error(e);
+        TimerContext timer = Diagnostics.time("getTableNames");
+        try {
+            String[] cached = metadataCache.get(TABLE_NAMES_KEY);
+            if (cached != null) {
+                return cached;
+            }
+            HTableDescriptor[] hTableDescriptors = connectionManager.getConnection().listTables();
+            Diagnostics.rpc();
+            String[] names = new String[hTableDescriptors.length];
+            for (int i = 0; i < hTableDescriptors.length; ++i) {
+                names[i] = hTableDescriptors[i].getNameAsString();
+            }
+            metadataCache.put(TABLE_NAMES_KEY, names);
+            TableNamesCache.write(names);
+            return names;
+        } finally {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Читает одну страницу ключей строк таблицы
+     *
+     * @param tableName имя таблицы
+     * @param startRow  ключ, с которого начинается страница (включительно)
+     * @param stopRow   ключ, на котором чтение останавливается (исключительно), пустой - до конца таблицы
+     * @param rowFilter фильтр ключей, выполняемый на регион-серверах, может быть null
+     * @param limit     максимальное количество ключей в странице
+     * @return ключи строк в порядке их хранения
+     */
+    public List<byte[]> getRowKeys(String tableName, byte[] startRow, byte[] stopRow, Filter rowFilter, int limit) throws IOException {
+        TimerContext timer = Diagnostics.time("getRowKeys");
+        try {
+            ScanProfile profile = getScanProfile(tableName);
+            Scan scan = profile.applyTo(new Scan(startRow, stopRow), limit);
+            if (rowFilter != null)
+                scan.setFilter(new FilterList(rowFilter, scan.getFilter()));
+            // PageFilter фильтрует строки целиком и не совместим с разбиением на пачки
+            if (profile.getBatch() == 0)
+                scan.setFilter(new FilterList(scan.getFilter(), new PageFilter(limit)));
+            List<byte[]> keys = new ArrayList<>(limit);
+            HTableInterface table = connectionManager.getTable(tableName);
+            try {
+                ResultScanner scanner = table.getScanner(scan);
+                try {
+                    Result result;
+                    while (keys.size() < limit && (result = scanner.next()) != null) {
+                        keys.add(result.getRow());
+                        Diagnostics.received(result);
                     }
+                } finally {
+                    scanner.close();
+                }
+                Diagnostics.scanned(keys.size(), scan.getCaching());
+            } finally {
+                table.close();
+            }
+            return keys;
+        } finally {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Готовит параллельное чтение ключей таблицы по её регионам. Читаются только регионы,
+     * пересекающиеся с границами поиска, и только их общая с поиском часть.
+     *
+     * @param tableName имя таблицы
+     * @param search    поиск ключей, {@link RowKeySearch#ALL} - все ключи
+     * @param pageSize  размер страницы ключей
+     * @return запущенное чтение; порядок страниц задаётся профилем сканирования таблицы
+     */
+    public RegionKeysReader readRowKeysByRegions(String tableName, RowKeySearch search, int pageSize) throws IOException {
+        Pair<byte[][], byte[][]> ranges = getSearchRanges(tableName, search);
+        RegionKeysReader reader = new RegionKeysReader(this, tableName, search, ranges.getFirst(), ranges.getSecond(),
+                pageSize, !getScanProfile(tableName).isFastFill());
+        reader.start(getRegionScanPool());
+        return reader;
+    }
+
+    /**
+     * @return начала и концы пересечений поиска с регионами таблицы в порядке ключей
+     */
+    private Pair<byte[][], byte[][]> getSearchRanges(String tableName, RowKeySearch search) throws IOException {
+        TimerContext timer = Diagnostics.time("regionLookup");
+        try {
+            Pair<byte[][], byte[][]> startEndKeys = regionKeysCache.get(tableName);
+            if (startEndKeys == null) {
+                startEndKeys = connectionManager.getStartEndKeys(tableName);
+                Diagnostics.rpc();
+                regionKeysCache.put(tableName, startEndKeys);
+            }
+            List<byte[]> startKeys = new ArrayList<>();
+            List<byte[]> endKeys = new ArrayList<>();
+            for (int i = 0; i < startEndKeys.getFirst().length; i++) {
+                byte[] regionStart = startEndKeys.getFirst()[i];
+                byte[] regionEnd = startEndKeys.getSecond()[i];
+                if (search.intersects(regionStart, regionEnd)) {
+                    startKeys.add(search.clampStart(regionStart));
+                    endKeys.add(search.clampStop(regionEnd));
+                }
+            }
+            return new Pair<>(startKeys.toArray(new byte[startKeys.size()][]), endKeys.toArray(new byte[endKeys.size()][]));
+        } finally {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Готовит потоковый экспорт таблицы в файл: находит регионы, пересекающиеся с поиском
+     *
+     * @param search   ключи экспортируемых строк, {@link RowKeySearch#ALL} - все
+     * @param families экспортируемые семейства, пустой массив - все
+     * @param codec    кодек всех значений или null - кодеки, назначенные столбцам
+     * @param encoding кодировка ключей и значений без кодека
+     * @param parallel читать регионы параллельно, не больше {@link #SCAN_THREADS} одновременно
+     * @return экспорт, который запускается {@link BulkOperation#start(TaskCallback)}
+     */
+    public TableExport createExport(String tableName, RowKeySearch search, byte[][] families, ExportFormat format,
+                                    ValueCodec codec, String encoding, File target, boolean parallel) throws IOException {
+        Pair<byte[][], byte[][]> ranges = getSearchRanges(tableName, search);
+        int threads = parallel ? Math.min(getScanThreads(), Math.max(1, ranges.getFirst().length)) : 1;
+        return new TableExport(connectionManager, configuration, tableName, search, families, format,
+                new CellText(valueCodecs, tableName, codec, encoding), target, ranges.getFirst(), ranges.getSecond(),
+                threads);
+    }
+
+    /**
+     * Готовит потоковый импорт файла экспорта в таблицу
+     *
+     * @param source           файл или каталог с частями параллельного экспорта
+     * @param codec            кодек всех значений или null - кодеки, назначенные столбцам
+     * @param encoding         кодировка ключей и значений без кодека
+     * @param writers          число потоков записи, каждый со своим буфером {@link #WRITE_BUFFER_SIZE}
+     * @param maxRowsPerSecond ограничение скорости, 0 - без ограничения
+     * @param bulkLoad         писать HFile'ы в каталог {@link #BULK_LOAD_DIR} и загружать их в таблицу
+     * @return импорт, который запускается {@link BulkOperation#start(TaskCallback)}
+     */
+    public TableImport createImport(String tableName, File source, ExportFormat format, ValueCodec codec,
+                                    String encoding, int writers, int maxRowsPerSecond, boolean bulkLoad) {
+        Path bulkLoadDir = bulkLoad ? new Path(configuration.get(BULK_LOAD_DIR, DEFAULT_BULK_LOAD_DIR),
+                tableName + '-' + System.currentTimeMillis()) : null;
+        return new TableImport(connectionManager, configuration, tableName, source, format,
+                new CellText(valueCodecs, tableName, codec, encoding), writers,
+                configuration.getLong(WRITE_BUFFER_SIZE, DEFAULT_WRITE_BUFFER_SIZE), maxRowsPerSecond, bulkLoadDir);
+    }
+
+    /**
+     * Собирает размер таблицы без чтения всех ключей: регионы и их нагрузку берёт из статуса кластера,
+     * а средний размер строки - из небольшой выборки строк нескольких регионов. Результат кэшируется.
+     *
+     * @return сведения о таблице, число строк в них - оценка
+     */
+    public TableStatistics getTableStatistics(String tableName) throws IOException {
+        TimerContext timer = Diagnostics.time("getTableStatistics");
+        try {
+            TableStatistics cached = statisticsCache.get(tableName);
+            if (cached != null) {
+                return cached;
+            }
+            HBaseAdmin admin = connectionManager.getAdmin();
+            ClusterStatus status = admin.getClusterStatus();
+            Diagnostics.rpc();
+            Map<byte[], HServerLoad.RegionLoad> loads = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+            Map<byte[], String> servers = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+            for (ServerName server : status.getServers()) {
+                for (Map.Entry<byte[], HServerLoad.RegionLoad> entry : status.getLoad(server).getRegionsLoad().entrySet()) {
+                    loads.put(entry.getKey(), entry.getValue());
+                    servers.put(entry.getKey(), server.getHostAndPort());
+                }
+            }
+            List<HRegionInfo> regionInfos = admin.getTableRegions(Bytes.toBytes(tableName));
+            Diagnostics.rpc();
+            long[] sample = sampleRows(tableName, regionInfos);
+            long averageRowBytes = sample[0] == 0 ? 0 : sample[1] / sample[0];
+            List<RegionStatistics> regions = new ArrayList<>(regionInfos.size());
+            for (HRegionInfo info : regionInfos) {
+                HServerLoad.RegionLoad load = loads.get(info.getRegionName());
+                long estimatedRows = 0;
+                // 0.94 не сообщает размер без сжатия, поэтому при сжатых файлах оценка занижена
+                if (load != null && averageRowBytes > 0)
+                    estimatedRows = (load.getStorefileSizeMB() + load.getMemStoreSizeMB()) * 1024L * 1024
+                            / averageRowBytes;
+                regions.add(new RegionStatistics(info.getRegionNameAsString(), info.getStartKey(), info.getEndKey(),
+                        servers.get(info.getRegionName()), load, estimatedRows, -1));
+            }
+            TableStatistics statistics = new TableStatistics(tableName, regions, sample[0], averageRowBytes,
+                    System.currentTimeMillis());
+            statisticsCache.put(tableName, statistics);
+            return statistics;
+        } finally {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Читает первые строки равномерно выбранных регионов, не засоряя кэш блоков.
+     * Прерывание потока останавливает чтение на ближайшей строке, сканер при этом закрывается.
+     *
+     * @return число прочитанных строк и их суммарный размер в байтах
+     */
+    private long[] sampleRows(String tableName, List<HRegionInfo> regions) throws IOException {
+        long rows = 0;
+        long bytes = 0;
+        int step = Math.max(1, regions.size() / SAMPLE_REGIONS);
+        HTableInterface table = connectionManager.getTable(tableName);
+        try {
+            for (int i = 0; i < regions.size(); i += step) {
+                Scan scan = new Scan(regions.get(i).getStartKey(), regions.get(i).getEndKey());
+                scan.setCaching(SAMPLE_ROWS_PER_REGION);
+                scan.setCacheBlocks(false);
+                scan.setFilter(new PageFilter(SAMPLE_ROWS_PER_REGION));
+                ResultScanner scanner = table.getScanner(scan);
+                try {
+                    Result result;
+                    int regionRows = 0;
+                    while (regionRows < SAMPLE_ROWS_PER_REGION && (result = scanner.next()) != null) {
+                        if (Thread.currentThread().isInterrupted())
+                            throw new InterruptedIOException("Sampling of " + tableName + " interrupted");
+                        regionRows++;
+                        for (KeyValue cell : result.raw()) {
+                            bytes += cell.getLength();
+                        }
+                    }
+                    rows += regionRows;
+                    Diagnostics.scanned(regionRows, SAMPLE_ROWS_PER_REGION);
+                } finally {
+                    scanner.close();
+                }
+            }
+        } finally {
+            table.close();
+        }
+        return new long[]{rows, bytes};
+    }
+
+    /**
+     * Готовит точный подсчёт строк параллельными сканами по регионам, не больше {@link #SCAN_THREADS} одновременно.
+     * Посчитанные сведения заменяют оценку в кэше.
+     *
+     * @return подсчёт, который запускается {@link BulkOperation#start(TaskCallback)}
+     */
+    public TableRowCount createRowCount(TableStatistics statistics) {
+        int threads = Math.min(getScanThreads(), Math.max(1, statistics.getRegions().size()));
+        return new TableRowCount(connectionManager, statistics, statisticsCache, threads);
+    }
+
+    /**
+     * @return пул потоков для чтения регионов, размер берётся из настройки {@link #SCAN_THREADS}
+     */
+    private synchronized ThreadPoolExecutor getRegionScanPool() {
+        if (regionScanPool == null) {
+            int threads = getScanThreads();
+            regionScanPool = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                private final AtomicInteger number = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "region-scan-" + number.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
                 }
             });
+            regionScanPool.allowCoreThreadTimeOut(true);
         }
-        progressBar.setVisible(false);
+        return regionScanPool;
+    }
+
+    private int getScanThreads() {
+        return Math.max(1, configuration.getInt(SCAN_THREADS, DEFAULT_SCAN_THREADS));
+    }
+
+    /**
+     * @return наименьший ключ, строго больший переданного
+     */
+    static byte[] nextRow(byte[] row) {
+        return Bytes.add(row, new byte[]{0});
     }
 
     /**
@@ -130,24 +643,26 @@ public class DatabaseWorker {
      * @return массив информаций о семействах столбцов
      */
     public String[] getFamilies(String tableName) throws IOException {
-        if (tableName == null)
-            return null;
+        TimerContext timer = Diagnostics.time("getFamilies");
+        try {
+            if (tableName == null)
+                return null;
 
-        Map<String, Map<String, Row>> table = cache.get(tableName);
-        if (table.keySet().size() > 0) {
-            return table.keySet().toArray(new String[table.size()]);
-        }
+            String[] cached = metadataCache.get(tableName);
+            if (cached != null) {
+                return cached;
+            }
 
-        HTable hTable = new HTable(configuration, tableName);
-        Collection<HColumnDescriptor> hColumnDiscriptors = hTable.getTableDescriptor().getFamilies();
-        List<HColumnDescriptor> result = new ArrayList<>(hColumnDiscriptors.size());
-        table = new HashMap<>();
-        cache.put(tableName, table);
-        for (HColumnDescriptor hColumnDiscriptor : hColumnDiscriptors) {
-            result.add(hColumnDiscriptor);
-            table.put(hColumnDiscriptor.getNameAsString(), new HashMap<String, Row>());
+            Collection<HColumnDescriptor> hColumnDiscriptors = connectionManager.getConnection()
+                    .getHTableDescriptor(Bytes.toBytes(tableName)).getFamilies();
+            Diagnostics.rpc();
+            List<HColumnDescriptor> result = new ArrayList<>(hColumnDiscriptors);
+            String[] familiesNames = getFamiliesNames(result);
+            metadataCache.put(tableName, familiesNames);
+            return familiesNames;
+        } finally {
+            timer.stop();
         }
-        return getFamiliesNames(result);
     }
 
     /**
@@ -164,10 +679,235 @@ public class DatabaseWorker {
         return familiesNames;
     }
 
-    public void changeTheCell(String choosedTable, byte[] selectedFamily, byte[] selectedRow, byte[] qualifier, byte[] newValue) throws IOException {
-        HTable hTable = new HTable(configuration, choosedTable);
-        Put put = new Put(selectedRow);
-        put.add(selectedFamily, qualifier, newValue);
-        hTable.put(put);
+    /**
+     * Записывает изменения ячеек по строке: строка блокируется, все ожидаемые значения сверяются
+     * и правки строки пишутся одним Put, так что строка записывается целиком или не записывается совсем.
+     * Каждая строка стоит четырёх обращений к серверу региона: блокировка, чтение, запись и снятие блокировки.
+     * Строки одной таблицы пишутся параллельно несколькими потоками, таблицы - по очереди; буфера записи здесь нет.
+     *
+     * @param edits изменения в порядке правки, более поздние правки ячейки перекрывают ранние
+     * @return записанные изменения и ячейки, которые успели изменить другие
+     */
+    public CommitResult commitEdits(List<CellEdit> edits) throws IOException {
+        TimerContext timer = Diagnostics.time("commitEdits");
+        try {
+            Map<String, Map<byte[], List<CellEdit>>> editsByTable = new LinkedHashMap<>();
+            for (CellEdit edit : edits) {
+                Map<byte[], List<CellEdit>> rows = editsByTable.get(edit.getTableName());
+                if (rows == null) {
+                    rows = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+                    editsByTable.put(edit.getTableName(), rows);
+                }
+                List<CellEdit> rowEdits = rows.get(edit.getRow());
+                if (rowEdits == null) {
+                    rowEdits = new ArrayList<>();
+                    rows.put(edit.getRow(), rowEdits);
+                }
+                rowEdits.add(edit);
+            }
+            List<CellEdit> committed = new ArrayList<>();
+            List<EditConflict> conflicts = new ArrayList<>();
+            for (Map.Entry<String, Map<byte[], List<CellEdit>>> tableEdits : editsByTable.entrySet()) {
+                try {
+                    commitChecked(tableEdits.getKey(), new ArrayList<>(tableEdits.getValue().values()),
+                            committed, conflicts);
+                } finally {
+                    for (CellEdit edit : edits) {
+                        if (edit.getTableName().equals(tableEdits.getKey()))
+                            rowCache.invalidate(new RowCacheKey(edit.getTableName(), edit.getRow(), edit.getFamily()));
+                    }
+                }
+            }
+            return new CommitResult(committed, conflicts);
+        } finally {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Записывает строки параллельно до {@link #CHECKED_COMMIT_THREADS} потоками пакетного пула,
+     * у каждого потока своя таблица и свои строки. Ошибка любого потока прерывает запись после завершения остальных.
+     */
+    private void commitChecked(final String tableName, List<List<CellEdit>> rows, List<CellEdit> committed,
+                               List<EditConflict> conflicts) throws IOException {
+        int parts = Math.min(rows.size(), CHECKED_COMMIT_THREADS);
+        List<Future<CommitResult>> futures = new ArrayList<>(parts);
+        for (int i = 0; i < parts; i++) {
+            final List<List<CellEdit>> part = new ArrayList<>();
+            for (int j = i; j < rows.size(); j += parts) {
+                part.add(rows.get(j));
+            }
+            futures.add(connectionManager.getBatchPool().submit(new Callable<CommitResult>() {
+                @Override
+                public CommitResult call() throws IOException {
+                    List<CellEdit> partCommitted = new ArrayList<>();
+                    List<EditConflict> partConflicts = new ArrayList<>();
+                    HTableInterface hTable = connectionManager.getTable(tableName);
+                    try {
+                        for (List<CellEdit> rowEdits : part) {
+                            commitCheckedRow(hTable, rowEdits, partCommitted, partConflicts);
+                        }
+                    } finally {
+                        hTable.close();
+                    }
+                    return new CommitResult(partCommitted, partConflicts);
+                }
+            }));
+        }
+        IOException failure = null;
+        for (Future<CommitResult> future : futures) {
+            try {
+                CommitResult result = future.get();
+                committed.addAll(result.getCommitted());
+                conflicts.addAll(result.getConflicts());
+            } catch (ExecutionException e) {
+                if (failure == null)
+                    failure = e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                for (Future<CommitResult> other : futures) {
+                    other.cancel(true);
+                }
+                throw new InterruptedIOException("Commit of " + tableName + " interrupted");
+            }
+        }
+        if (failure != null)
+            throw failure;
+    }
+
+    /**
+     * Записывает правки одной строки. Под блокировкой строки читаются все правленые ячейки,
+     * и если в каждой всё ещё ожидаемое значение, правки пишутся одним Put. Иначе строка не пишется:
+     * ячейки с чужими значениями возвращаются конфликтами, остальные правки строки остаются в журнале.
+     * Блокировка держится только на время чтения и записи, другие записи в строку в это время ждут.
+     */
+    private void commitCheckedRow(HTableInterface hTable, List<CellEdit> rowEdits, List<CellEdit> committed,
+                                  List<EditConflict> conflicts) throws IOException {
+        byte[] row = rowEdits.get(0).getRow();
+        RowLock lock = hTable.lockRow(row);
+        Diagnostics.rpc();
+        try {
+            Get get = new Get(row, lock);
+            for (CellEdit edit : rowEdits) {
+                get.addColumn(edit.getFamily(), edit.getQualifier());
+            }
+            Result current = hTable.get(get);
+            Diagnostics.rpc();
+            Diagnostics.received(current);
+            List<EditConflict> rowConflicts = new ArrayList<>();
+            for (CellEdit edit : rowEdits) {
+                KeyValue keyValue = current.getColumnLatest(edit.getFamily(), edit.getQualifier());
+                byte[] value = keyValue == null ? null : keyValue.getValue();
+                // значение могло успеть измениться и вернуться обратно - такую ячейку считаем неизменной
+                if (!Arrays.equals(value, edit.getExpectedValue()))
+                    rowConflicts.add(new EditConflict(edit, value, keyValue == null ? 0L : keyValue.getTimestamp()));
+            }
+            if (!rowConflicts.isEmpty()) {
+                conflicts.addAll(rowConflicts);
+                return;
+            }
+            hTable.put(toPut(rowEdits, lock));
+            Diagnostics.rpc();
+            committed.addAll(rowEdits);
+        } finally {
+            hTable.unlockRow(lock);
+            Diagnostics.rpc();
+        }
+    }
+
+    /**
+     * @param lock блокировка строки, под которой идёт запись
+     */
+    private static Put toPut(List<CellEdit> rowEdits, RowLock lock) {
+        Put put = new Put(rowEdits.get(0).getRow(), lock);
+        for (CellEdit edit : rowEdits) {
+            put.add(edit.getFamily(), edit.getQualifier(), edit.getValue());
+        }
+        return put;
+    }
+
+    /**
+     * Забывает закэшированные списки таблиц, семейств, прочитанные строки, статистику и границы регионов таблиц
+     */
+    public void invalidateCaches() {
+        metadataCache.invalidateAll();
+        rowCache.invalidateAll();
+        statisticsCache.invalidateAll();
+        regionKeysCache.invalidateAll();
+    }
+
+    public WeightedCache<String, String[]> getMetadataCache() {
+        return metadataCache;
+    }
+
+    public WeightedCache<RowCacheKey, ?> getRowCache() {
+        return rowCache;
+    }
+
+    /**
+     * Закрывает соединение с кластером и останавливает фоновые потоки
+     */
+    public void close() {
+        tasks.shutdown();
+        synchronized (this) {
+            if (regionScanPool != null)
+                regionScanPool.shutdownNow();
+        }
+        connectionManager.close();
+    }
+
+    /**
+     * Первая страница столбцов строки в кэше строк и размер страницы, с которым её читали
+     */
+    private static final class ColumnPage {
+        private final List<KeyValue> cells;
+        private final int limit;
+
+        private ColumnPage(List<KeyValue> cells, int limit) {
+            this.cells = cells;
+            this.limit = limit;
+        }
+
+        /**
+         * @return хватит ли страницы на запрос: она не меньше запрошенной или в ней всё семейство
+         */
+        private boolean covers(int wanted) {
+            return wanted <= limit || cells.size() < limit;
+        }
+
+        private List<KeyValue> first(int wanted) {
+            return cells.size() <= wanted ? cells : cells.subList(0, wanted);
+        }
+    }
+
+    /**
+     * Ключ кэша строк: таблица, ключ строки и семейство
+     */
+    public static final class RowCacheKey {
+        private final String tableName;
+        private final byte[] row;
+        private final byte[] family;
+
+        public RowCacheKey(String tableName, byte[] row, byte[] family) {
+            this.tableName = tableName;
+            this.row = row;
+            this.family = family;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof RowCacheKey)) return false;
+            RowCacheKey that = (RowCacheKey) o;
+            return tableName.equals(that.tableName) && Arrays.equals(row, that.row) && Arrays.equals(family, that.family);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = tableName.hashCode();
+            result = 31 * result + Arrays.hashCode(row);
+            result = 31 * result + Arrays.hashCode(family);
+            return result;
+        }
     }
 }
@@ -0,0 +1,134 @@
+package brain;
+
+import com.yammer.metrics.core.*;
+import com.yammer.metrics.reporting.JmxReporter;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Result;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Метрики приложения: время операций {@link DatabaseWorker}, число обращений к кластеру и полученные байты,
+ * доля попаданий в кэши, время декодирования, публикация порций в поток обработки событий Swing
+ * и задержка очереди событий, зависания этого потока по {@link EdtWatchdog}. Метрики общие на процесс и по желанию публикуются в JMX.
+ */
+public final class Diagnostics {
+    private static final MetricsRegistry registry = new MetricsRegistry();
+    private static final Counter rpcs = registry.newCounter(DatabaseWorker.class, "rpcs");
+    private static final Counter bytesReceived = registry.newCounter(DatabaseWorker.class, "bytesReceived");
+    private static final Timer decode = registry.newTimer(BytesToStringConverter.class, "decode",
+            TimeUnit.MICROSECONDS, TimeUnit.SECONDS);
+    private static final Timer publish = registry.newTimer(ChunkPublisher.class, "publish",
+            TimeUnit.MILLISECONDS, TimeUnit.SECONDS);
+    private static final Histogram eventQueueLag = registry.newHistogram(EdtWatchdog.class, "eventQueueLagMs", true);
+    private static final Counter stalls = registry.newCounter(EdtWatchdog.class, "stalls");
+    private static final Histogram stallDuration = registry.newHistogram(EdtWatchdog.class, "stallMs", true);
+    private static final Counter offEdtCalls = registry.newCounter(EdtWatchdog.class, "offEdtCalls");
+    private static JmxReporter jmxReporter;
+
+    private Diagnostics() {
+    }
+
+    /**
+     * Начинает замер операции, его нужно закончить {@link TimerContext#stop()} в finally
+     *
+     * @param operation имя операции, обычно имя метода
+     */
+    public static TimerContext time(String operation) {
+        return registry.newTimer(DatabaseWorker.class, operation, TimeUnit.MILLISECONDS, TimeUnit.SECONDS).time();
+    }
+
+    /**
+     * Учитывает одно обращение к кластеру
+     */
+    static void rpc() {
+        rpcs.inc();
+    }
+
+    /**
+     * Учитывает полученные от кластера ячейки
+     */
+    static void received(Result result) {
+        KeyValue[] cells = result.raw();
+        if (cells == null)
+            return;
+        long bytes = 0;
+        for (KeyValue cell : cells) {
+            bytes += cell.getLength();
+        }
+        bytesReceived.inc(bytes);
+    }
+
+    /**
+     * Учитывает обращения скана: открытие и по одному на каждые caching полученных строк
+     */
+    static void scanned(int rows, int caching) {
+        rpcs.inc(1 + (rows + Math.max(1, caching) - 1) / Math.max(1, caching));
+    }
+
+    static TimerContext timeDecode() {
+        return decode.time();
+    }
+
+    static TimerContext timePublish() {
+        return publish.time();
+    }
+
+    /**
+     * Показывает долю попаданий кэша в процентах
+     */
+    static void registerCache(String name, final WeightedCache<?, ?> cache) {
+        registry.newGauge(WeightedCache.class, name + "HitRate", new Gauge<Double>() {
+            @Override
+            public Double value() {
+                long requests = cache.getHits() + cache.getMisses();
+                return requests == 0 ? 0 : 100.0 * cache.getHits() / requests;
+            }
+        });
+    }
+
+    static void eventQueueLag(long millis) {
+        eventQueueLag.update(millis);
+    }
+
+    /**
+     * Учитывает зависание потока обработки событий Swing
+     */
+    static void stall(long millis) {
+        stalls.inc();
+        stallDuration.update(millis);
+    }
+
+    /**
+     * Учитывает обращение к компонентам Swing не из потока обработки событий
+     */
+    static void offEdtCall() {
+        offEdtCalls.inc();
+    }
+
+    /**
+     * Включает или выключает публикацию метрик в JMX
+     */
+    public static synchronized void setJmxEnabled(boolean enabled) {
+        if (enabled && jmxReporter == null) {
+            jmxReporter = new JmxReporter(registry);
+            jmxReporter.start();
+        } else if (!enabled && jmxReporter != null) {
+            jmxReporter.shutdown();
+            jmxReporter = null;
+        }
+    }
+
+    public static synchronized boolean isJmxEnabled() {
+        return jmxReporter != null;
+    }
+
+    /**
+     * @return все метрики, упорядоченные по группе, типу и имени
+     */
+    public static Map<MetricName, Metric> getMetrics() {
+        return new TreeMap<>(registry.allMetrics());
+    }
+}
@@ -0,0 +1,32 @@
+package brain;
+
+/**
+ * Изменение, которое не записано, потому что ячейку успел изменить кто-то другой
+ */
+public final class EditConflict {
+    private final CellEdit edit;
+    private final byte[] currentValue;
+    private final long currentTimestamp;
+
+    /**
+     * @param currentValue     значение ячейки в таблице сейчас, null - ячейки нет
+     * @param currentTimestamp время этого значения, 0 - ячейки нет
+     */
+    public EditConflict(CellEdit edit, byte[] currentValue, long currentTimestamp) {
+        this.edit = edit;
+        this.currentValue = currentValue;
+        this.currentTimestamp = currentTimestamp;
+    }
+
+    public CellEdit getEdit() {
+        return edit;
+    }
+
+    public byte[] getCurrentValue() {
+        return currentValue;
+    }
+
+    public long getCurrentTimestamp() {
+        return currentTimestamp;
+    }
+}
@@ -0,0 +1,66 @@
+package brain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Журнал изменений ячеек, ожидающих записи. Повторная правка той же ячейки заменяет предыдущую,
+ * порядок первых правок сохраняется. Записываются изменения одним пакетом через
+ * {@link DatabaseWorker#commitEdits(List)}, до этого их можно отменить.
+ */
+public class EditJournal {
+    private final List<CellEdit> edits = new ArrayList<>();
+
+    /**
+     * Добавляет изменение или заменяет им изменение той же ячейки
+     */
+    public synchronized void stage(CellEdit edit) {
+        int index = indexOf(edit.getTableName(), edit.getRow(), edit.getFamily(), edit.getQualifier());
+        if (index >= 0)
+            edits.set(index, edit);
+        else
+            edits.add(edit);
+    }
+
+    /**
+     * @return ожидающее изменение ячейки или null
+     */
+    public synchronized CellEdit get(String tableName, byte[] row, byte[] family, byte[] qualifier) {
+        int index = indexOf(tableName, row, family, qualifier);
+        return index < 0 ? null : edits.get(index);
+    }
+
+    /**
+     * @return копия ожидающих изменений в порядке правки
+     */
+    public synchronized List<CellEdit> getEdits() {
+        return new ArrayList<>(edits);
+    }
+
+    /**
+     * Убирает записанные изменения. Ячейки, исправленные ещё раз во время записи, остаются в журнале.
+     */
+    public synchronized void removeAll(List<CellEdit> committed) {
+        for (CellEdit edit : committed) {
+            int index = edits.indexOf(edit);
+            if (index >= 0)
+                edits.remove(index);
+        }
+    }
+
+    public synchronized void clear() {
+        edits.clear();
+    }
+
+    public synchronized int size() {
+        return edits.size();
+    }
+
+    private int indexOf(String tableName, byte[] row, byte[] family, byte[] qualifier) {
+        for (int i = 0; i < edits.size(); i++) {
+            if (edits.get(i).sameCell(tableName, row, family, qualifier))
+                return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,216 @@
+package brain;
+
+import org.apache.log4j.Logger;
+
+import javax.swing.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сторож потока обработки событий Swing. Фоновый поток регулярно ставит в очередь событий отметку
+ * и замеряет, через сколько она выполнилась. Если отметка ждёт дольше порога, снимается стек потока событий -
+ * он показывает, чем поток занят. Зависания пишутся в журнал и хранятся для окна диагностики.
+ * Заодно замечаются изменения компонентов Swing из других потоков.
+ */
+public final class EdtWatchdog {
+    /**
+     * Порог зависания в миллисекундах, -Dhbaseexplorer.edt.stallMs=...
+     */
+    public static final String STALL_THRESHOLD_PROPERTY = "hbaseexplorer.edt.stallMs";
+    private static final long SAMPLE_MS = 100;
+    private static final int STALL_HISTORY = 50;
+    private static final Logger logger = Logger.getLogger(EdtWatchdog.class);
+    private static final long stallThresholdMs = Long.getLong(STALL_THRESHOLD_PROPERTY, 500);
+    private static final Deque<Stall> stalls = new ArrayDeque<>();
+    private static Thread watchdog;
+    private static long totalStallMs;
+    private static long longestStallMs;
+    private static int stallCount;
+    // состояние текущей отметки, пишется потоком событий
+    private static volatile Thread dispatchThread;
+    private static volatile boolean heartbeatDone = true;
+    private static volatile long heartbeatLagMs;
+
+    private EdtWatchdog() {
+    }
+
+    /**
+     * Запускает сторож и проверку обращений к компонентам из чужих потоков, повторный вызов ничего не делает
+     */
+    public static synchronized void start() {
+        if (watchdog != null)
+            return;
+        watchdog = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    watch();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "edt-watchdog");
+        watchdog.setDaemon(true);
+        watchdog.start();
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                RepaintManager.setCurrentManager(new ThreadCheckingRepaintManager());
+            }
+        });
+    }
+
+    private static void watch() throws InterruptedException {
+        long posted = 0;
+        StackTraceElement[] stack = null;
+        while (!Thread.currentThread().isInterrupted()) {
+            if (heartbeatDone) {
+                if (stack != null) {
+                    record(heartbeatLagMs, stack);
+                    stack = null;
+                }
+                heartbeatDone = false;
+                posted = System.nanoTime();
+                final long heartbeatPosted = posted;
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        dispatchThread = Thread.currentThread();
+                        heartbeatLagMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - heartbeatPosted);
+                        Diagnostics.eventQueueLag(heartbeatLagMs);
+                        heartbeatDone = true;
+                    }
+                });
+            } else if (stack == null && dispatchThread != null
+                    && TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - posted) >= stallThresholdMs) {
+                // снимаем стек, пока поток ещё занят, а не когда он уже освободился
+                stack = dispatchThread.getStackTrace();
+            }
+            Thread.sleep(SAMPLE_MS);
+        }
+    }
+
+    private static void record(long durationMs, StackTraceElement[] stack) {
+        Stall stall = new Stall(System.currentTimeMillis() - durationMs, durationMs, stack);
+        Diagnostics.stall(durationMs);
+        synchronized (EdtWatchdog.class) {
+            stallCount++;
+            totalStallMs += durationMs;
+            longestStallMs = Math.max(longestStallMs, durationMs);
+            stalls.addFirst(stall);
+            if (stalls.size() > STALL_HISTORY)
+                stalls.removeLast();
+        }
+        logger.warn("Event dispatch thread stalled for " + durationMs + " ms", stall.asThrowable());
+    }
+
+    /**
+     * @return последние зависания, от новых к старым
+     */
+    public static synchronized List<Stall> getStalls() {
+        return new ArrayList<>(stalls);
+    }
+
+    /**
+     * Пишет в журнал итог зависаний за сеанс
+     */
+    public static synchronized void logSummary() {
+        if (stallCount > 0)
+            logger.info("Event dispatch thread stalls: " + stallCount + ", total " + totalStallMs
+                    + " ms, longest " + longestStallMs + " ms");
+    }
+
+    /**
+     * Зависание потока событий и его стек на момент превышения порога
+     */
+    public static class Stall {
+        private final long startedAt;
+        private final long durationMs;
+        private final StackTraceElement[] stack;
+
+        Stall(long startedAt, long durationMs, StackTraceElement[] stack) {
+            this.startedAt = startedAt;
+            this.durationMs = durationMs;
+            this.stack = stack;
+        }
+
+        public long getStartedAt() {
+            return startedAt;
+        }
+
+        public long getDurationMs() {
+            return durationMs;
+        }
+
+        public StackTraceElement[] getStack() {
+            return stack.clone();
+        }
+
+        Throwable asThrowable() {
+            Throwable trace = new Throwable("Event dispatch thread stack after " + stallThresholdMs + " ms");
+            trace.setStackTrace(stack);
+            return trace;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            text.append(new Date(startedAt)).append(", ").append(durationMs).append(" ms\n");
+            for (StackTraceElement element : stack) {
+                text.append("\tat ").append(element).append('\n');
+            }
+            return text.toString();
+        }
+    }
+
+    /**
+     * Замечает изменения компонентов не из потока событий. Вызов repaint() разрешён из любого потока
+     * и не считается. О каждом месте вызова пишет в журнал один раз.
+     */
+    private static class ThreadCheckingRepaintManager extends RepaintManager {
+        private final Set<StackTraceElement> reported = new HashSet<>();
+
+        @Override
+        public synchronized void addInvalidComponent(JComponent invalidComponent) {
+            check();
+            super.addInvalidComponent(invalidComponent);
+        }
+
+        @Override
+        public void addDirtyRegion(JComponent c, int x, int y, int w, int h) {
+            check();
+            super.addDirtyRegion(c, x, y, w, h);
+        }
+
+        private void check() {
+            if (SwingUtilities.isEventDispatchThread())
+                return;
+            StackTraceElement[] stack = Thread.currentThread().getStackTrace();
+            StackTraceElement caller = null;
+            for (StackTraceElement element : stack) {
+                if (element.getMethodName().equals("repaint") && element.getClassName().startsWith("java"))
+                    return;
+                if (caller == null && !element.getClassName().startsWith("java")
+                        && !element.getClassName().startsWith("sun.")
+                        && !element.getClassName().equals(getClass().getName()))
+                    caller = element;
+            }
+            Diagnostics.offEdtCall();
+            boolean first;
+            synchronized (reported) {
+                first = reported.add(caller);
+            }
+            if (first) {
+                Throwable trace = new Throwable("Swing component changed from " + Thread.currentThread().getName());
+                trace.setStackTrace(stack);
+                logger.warn("Swing call outside of the event dispatch thread at " + caller, trace);
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package brain;
+
+import org.apache.hadoop.conf.Configuration;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Формат файла экспорта таблицы, он же формат файла импорта. Готовые форматы лежат в {@link ExportFormats}.
+ */
+public interface ExportFormat {
+    /**
+     * @return имя формата для показа пользователю
+     */
+    String getName();
+
+    /**
+     * @return расширение файла без точки
+     */
+    String getExtension();
+
+    /**
+     * @return можно ли склеить файлы, записанные параллельно, в один простым дописыванием байт
+     */
+    boolean isConcatenable();
+
+    /**
+     * Создаёт или перезаписывает файл
+     *
+     * @param text          перевод ячеек в текст для текстовых форматов
+     * @param configuration настройки клиента HBase для форматов Hadoop
+     */
+    ExportWriter open(File file, CellText text, Configuration configuration) throws IOException;
+
+    /**
+     * Открывает файл, записанный этим форматом, для импорта
+     *
+     * @param text перевод текста обратно в ячейки для текстовых форматов
+     */
+    ExportReader openReader(File file, CellText text, Configuration configuration) throws IOException;
+}
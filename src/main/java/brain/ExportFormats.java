@@ -0,0 +1,451 @@
+package brain;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.io.SequenceFile;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Встроенные форматы экспорта. Каждая ячейка - отдельная запись:
+ * <ul>
+ * <li>CSV - строка {@code row,family,qualifier,timestamp,value} по RFC 4180, без заголовка;</li>
+ * <li>JSON Lines - объект {@code {"row":..,"family":..,"qualifier":..,"timestamp":..,"value":..}} на строку;</li>
+ * <li>SequenceFile - ключ {@link ImmutableBytesWritable} с ключом строки и значение {@link KeyValue} как есть,
+ * кодировка и кодек не применяются.</li>
+ * </ul>
+ * Текстовые файлы пишутся в UTF-8.
+ */
+public final class ExportFormats {
+    // поля записи текстовых форматов в порядке столбцов CSV
+    private static final String[] FIELDS = {"row", "family", "qualifier", "timestamp", "value"};
+    public static final ExportFormat CSV = new TextFormat("CSV", "csv") {
+        @Override
+        protected void writeCell(Writer writer, CellText text, KeyValue cell) throws IOException {
+            writeCsv(writer, text.row(cell));
+            writer.write(',');
+            writeCsv(writer, text.family(cell));
+            writer.write(',');
+            writeCsv(writer, text.qualifier(cell));
+            writer.write(',');
+            writer.write(Long.toString(cell.getTimestamp()));
+            writer.write(',');
+            writeCsv(writer, text.value(cell));
+            writer.write("\r\n");
+        }
+
+        @Override
+        protected KeyValue readCell(BufferedReader reader, CellText text) throws IOException {
+            List<String> fields = new ArrayList<>(FIELDS.length);
+            do {
+                fields.clear();
+                if (!readCsvRecord(reader, fields))
+                    return null;
+            } while (fields.size() == 1 && fields.get(0).isEmpty());
+            if (fields.size() != FIELDS.length)
+                throw new IOException("Expected " + FIELDS.length + " CSV fields, got " + fields.size());
+            return text.toCell(fields.get(0), fields.get(1), fields.get(2), parseTimestamp(fields.get(3)), fields.get(4));
+        }
+    };
+    public static final ExportFormat JSON_LINES = new TextFormat("JSON Lines", "jsonl") {
+        @Override
+        protected void writeCell(Writer writer, CellText text, KeyValue cell) throws IOException {
+            writer.write("{\"row\":");
+            writeJson(writer, text.row(cell));
+            writer.write(",\"family\":");
+            writeJson(writer, text.family(cell));
+            writer.write(",\"qualifier\":");
+            writeJson(writer, text.qualifier(cell));
+            writer.write(",\"timestamp\":");
+            writer.write(Long.toString(cell.getTimestamp()));
+            writer.write(",\"value\":");
+            writeJson(writer, text.value(cell));
+            writer.write("}\n");
+        }
+
+        @Override
+        protected KeyValue readCell(BufferedReader reader, CellText text) throws IOException {
+            String line;
+            do {
+                line = reader.readLine();
+                if (line == null)
+                    return null;
+            } while (line.trim().isEmpty());
+            Map<String, String> fields = parseJsonObject(line);
+            for (String field : FIELDS) {
+                if (!"timestamp".equals(field) && fields.get(field) == null)
+                    throw new IOException("Missing \"" + field + "\" in " + line);
+            }
+            return text.toCell(fields.get("row"), fields.get("family"), fields.get("qualifier"),
+                    parseTimestamp(fields.get("timestamp")), fields.get("value"));
+        }
+    };
+    public static final ExportFormat SEQUENCE_FILE = new ExportFormat() {
+        @Override
+        public String getName() {
+            return "SequenceFile";
+        }
+
+        @Override
+        public String getExtension() {
+            return "seq";
+        }
+
+        @Override
+        public boolean isConcatenable() {
+            return false;
+        }
+
+        @Override
+        public ExportWriter open(File file, CellText text, Configuration configuration) throws IOException {
+            final SequenceFile.Writer writer = SequenceFile.createWriter(FileSystem.getLocal(configuration), configuration,
+                    new Path(file.toURI()), ImmutableBytesWritable.class, KeyValue.class);
+            return new ExportWriter() {
+                private final ImmutableBytesWritable row = new ImmutableBytesWritable();
+
+                @Override
+                public void write(KeyValue cell) throws IOException {
+                    row.set(cell.getBuffer(), cell.getRowOffset(), cell.getRowLength());
+                    writer.append(row, cell);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    writer.close();
+                }
+            };
+        }
+
+        @Override
+        public ExportReader openReader(File file, CellText text, Configuration configuration) throws IOException {
+            final SequenceFile.Reader reader = new SequenceFile.Reader(FileSystem.getLocal(configuration),
+                    new Path(file.toURI()), configuration);
+            return new ExportReader() {
+                private final ImmutableBytesWritable row = new ImmutableBytesWritable();
+
+                @Override
+                public KeyValue read() throws IOException {
+                    KeyValue cell = new KeyValue();
+                    return reader.next(row, cell) ? cell : null;
+                }
+
+                @Override
+                public long getPosition() throws IOException {
+                    return reader.getPosition();
+                }
+
+                @Override
+                public void close() throws IOException {
+                    reader.close();
+                }
+            };
+        }
+    };
+    public static final List<ExportFormat> ALL = Collections.unmodifiableList(Arrays.asList(
+            CSV, JSON_LINES, SEQUENCE_FILE));
+
+    private ExportFormats() {
+    }
+
+    /**
+     * @return время ячейки, пустое - время записи
+     */
+    private static long parseTimestamp(String text) throws IOException {
+        if (text == null || text.trim().isEmpty())
+            return HConstants.LATEST_TIMESTAMP;
+        try {
+            return Long.parseLong(text.trim());
+        } catch (NumberFormatException e) {
+            throw new IOException("Bad timestamp " + text, e);
+        }
+    }
+
+    /**
+     * Читает одну запись CSV, поля в кавычках могут содержать переводы строк
+     *
+     * @return false в конце файла
+     */
+    private static boolean readCsvRecord(BufferedReader reader, List<String> fields) throws IOException {
+        int c = reader.read();
+        if (c == -1)
+            return false;
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        while (true) {
+            if (quoted) {
+                if (c == -1)
+                    throw new EOFException("Unterminated quoted CSV field");
+                if (c == '"') {
+                    reader.mark(1);
+                    if (reader.read() == '"')
+                        field.append('"');
+                    else {
+                        reader.reset();
+                        quoted = false;
+                    }
+                } else
+                    field.append((char) c);
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n' || c == -1) {
+                break;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+            c = reader.read();
+        }
+        fields.add(field.toString());
+        return true;
+    }
+
+    /**
+     * Разбирает плоский объект JSON, которым JSON Lines хранит ячейку
+     *
+     * @return значения полей строками, null - значение null
+     */
+    private static Map<String, String> parseJsonObject(String line) throws IOException {
+        Map<String, String> fields = new HashMap<>();
+        int[] position = {skipSpaces(line, 0)};
+        expect(line, position, '{');
+        if (peek(line, position) == '}')
+            return fields;
+        while (true) {
+            String name = parseJsonString(line, position);
+            expect(line, position, ':');
+            fields.put(name, parseJsonValue(line, position));
+            if (peek(line, position) == ',') {
+                position[0]++;
+                continue;
+            }
+            expect(line, position, '}');
+            return fields;
+        }
+    }
+
+    private static String parseJsonValue(String line, int[] position) throws IOException {
+        char c = peek(line, position);
+        if (c == '"')
+            return parseJsonString(line, position);
+        int start = position[0];
+        while (position[0] < line.length() && ",} \t".indexOf(line.charAt(position[0])) < 0) {
+            position[0]++;
+        }
+        String literal = line.substring(start, position[0]);
+        if (literal.isEmpty())
+            throw new IOException("Bad JSON value at " + start + ": " + line);
+        return "null".equals(literal) ? null : literal;
+    }
+
+    private static String parseJsonString(String line, int[] position) throws IOException {
+        expect(line, position, '"');
+        StringBuilder builder = new StringBuilder();
+        int i = position[0];
+        while (true) {
+            if (i >= line.length())
+                throw new IOException("Unterminated JSON string: " + line);
+            char c = line.charAt(i++);
+            if (c == '"')
+                break;
+            if (c != '\\') {
+                builder.append(c);
+                continue;
+            }
+            if (i >= line.length())
+                throw new IOException("Bad JSON escape: " + line);
+            char escaped = line.charAt(i++);
+            switch (escaped) {
+                case 'n':
+                    builder.append('\n');
+                    break;
+                case 'r':
+                    builder.append('\r');
+                    break;
+                case 't':
+                    builder.append('\t');
+                    break;
+                case 'b':
+                    builder.append('\b');
+                    break;
+                case 'f':
+                    builder.append('\f');
+                    break;
+                case 'u':
+                    if (i + 4 > line.length())
+                        throw new IOException("Bad JSON escape: " + line);
+                    try {
+                        builder.append((char) Integer.parseInt(line.substring(i, i + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw new IOException("Bad JSON escape: " + line, e);
+                    }
+                    i += 4;
+                    break;
+                default:
+                    builder.append(escaped);
+            }
+        }
+        position[0] = i;
+        return builder.toString();
+    }
+
+    private static char peek(String line, int[] position) throws IOException {
+        position[0] = skipSpaces(line, position[0]);
+        if (position[0] >= line.length())
+            throw new IOException("Unexpected end of JSON: " + line);
+        return line.charAt(position[0]);
+    }
+
+    private static void expect(String line, int[] position, char expected) throws IOException {
+        if (peek(line, position) != expected)
+            throw new IOException("Expected '" + expected + "' at " + position[0] + ": " + line);
+        position[0]++;
+    }
+
+    private static int skipSpaces(String line, int position) {
+        while (position < line.length() && Character.isWhitespace(line.charAt(position))) {
+            position++;
+        }
+        return position;
+    }
+
+    private static void writeCsv(Writer writer, String field) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < field.length() && !quote; i++) {
+            char c = field.charAt(i);
+            quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+        }
+        if (!quote) {
+            writer.write(field);
+            return;
+        }
+        writer.write('"');
+        writer.write(field.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private static void writeJson(Writer writer, String field) throws IOException {
+        writer.write('"');
+        int start = 0;
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\')
+                continue;
+            writer.write(field, start, i - start);
+            switch (c) {
+                case '"':
+                    writer.write("\\\"");
+                    break;
+                case '\\':
+                    writer.write("\\\\");
+                    break;
+                case '\n':
+                    writer.write("\\n");
+                    break;
+                case '\r':
+                    writer.write("\\r");
+                    break;
+                case '\t':
+                    writer.write("\\t");
+                    break;
+                default:
+                    writer.write(String.format("\\u%04x", (int) c));
+            }
+            start = i + 1;
+        }
+        writer.write(field, start, field.length() - start);
+        writer.write('"');
+    }
+
+    /**
+     * Текстовый формат: ячейки пишутся через буферизованный канал файла и читаются потоком по записи
+     */
+    private abstract static class TextFormat implements ExportFormat {
+        private final String name;
+        private final String extension;
+
+        private TextFormat(String name, String extension) {
+            this.name = name;
+            this.extension = extension;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getExtension() {
+            return extension;
+        }
+
+        @Override
+        public boolean isConcatenable() {
+            return true;
+        }
+
+        @Override
+        public ExportWriter open(File file, final CellText text, Configuration configuration) throws IOException {
+            final Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8);
+            return new ExportWriter() {
+                @Override
+                public void write(KeyValue cell) throws IOException {
+                    writeCell(writer, text, cell);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    writer.close();
+                }
+            };
+        }
+
+        @Override
+        public ExportReader openReader(File file, final CellText text, Configuration configuration) throws IOException {
+            final FileInputStream input = new FileInputStream(file);
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+            return new ExportReader() {
+                @Override
+                public KeyValue read() throws IOException {
+                    return readCell(reader, text);
+                }
+
+                @Override
+                public long getPosition() throws IOException {
+                    return input.getChannel().position();
+                }
+
+                @Override
+                public void close() throws IOException {
+                    reader.close();
+                }
+            };
+        }
+
+        protected abstract void writeCell(Writer writer, CellText text, KeyValue cell) throws IOException;
+
+        /**
+         * @return следующая ячейка или null в конце файла
+         */
+        protected abstract KeyValue readCell(BufferedReader reader, CellText text) throws IOException;
+    }
+}
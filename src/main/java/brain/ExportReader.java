@@ -0,0 +1,22 @@
+package brain;
+
+import org.apache.hadoop.hbase.KeyValue;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Чтение ячеек из файла экспорта по одной, файл целиком в память не загружается
+ */
+public interface ExportReader extends Closeable {
+    /**
+     * @return следующая ячейка или null в конце файла
+     * @throws IOException если файл не читается или запись не разбирается
+     */
+    KeyValue read() throws IOException;
+
+    /**
+     * @return сколько байт файла уже прочитано
+     */
+    long getPosition() throws IOException;
+}
@@ -0,0 +1,13 @@
+package brain;
+
+import org.apache.hadoop.hbase.KeyValue;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Запись ячеек в файл экспорта. Ячейки пишутся сразу по мере чтения и нигде не накапливаются.
+ */
+public interface ExportWriter extends Closeable {
+    void write(KeyValue cell) throws IOException;
+}
@@ -0,0 +1,106 @@
+package brain;
+
+import javax.swing.*;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Отфильтрованное представление списка ключей таблицы: хранит только номера подошедших ключей
+ * в исходной модели и пополняется порциями по мере работы {@link RowKeysFilter}.
+ * Все изменения выполняются в потоке обработки событий Swing.
+ */
+public class FilteredRowKeysListModel extends AbstractListModel<String> implements RowKeysView, ChunkPublisher.Consumer<int[]> {
+    private final RowKeysListModel source;
+    private final String query;
+    private final String encoding;
+    private final JProgressBar progressBar;
+    private final int sourceSize;
+    private int[] indices = new int[64];
+    private int size;
+    private volatile int scanned;
+    private volatile int total;
+    private boolean complete;
+
+    FilteredRowKeysListModel(RowKeysListModel source, int sourceSize, String query, String encoding, JProgressBar progressBar) {
+        this.source = source;
+        this.sourceSize = sourceSize;
+        this.query = query;
+        this.encoding = encoding;
+        this.progressBar = progressBar;
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public String getElementAt(int index) {
+        return source.getElementAt(indices[index]);
+    }
+
+    @Override
+    public byte[] getKeyAt(int index) {
+        return source.getKeyAt(indices[index]);
+    }
+
+    @Override
+    public void publish(List<int[]> chunk) {
+        int from = size;
+        for (int[] matches : chunk) {
+            if (matches == RowKeysFilter.END_OF_PASS)
+                complete = true;
+            if (size + matches.length > indices.length)
+                indices = Arrays.copyOf(indices, Math.max(size + matches.length, indices.length * 2));
+            System.arraycopy(matches, 0, indices, size, matches.length);
+            size += matches.length;
+        }
+        if (size > from)
+            fireIntervalAdded(this, from, size - 1);
+    }
+
+    @Override
+    public void frameFinished() {
+        progressBar.setVisible(!complete);
+        progressBar.setMaximum(total);
+        progressBar.setValue(scanned);
+    }
+
+    void setProgress(int scanned, int total) {
+        this.scanned = scanned;
+        this.total = total;
+    }
+
+    /**
+     * @return все ли кандидаты проверены; только полный результат можно уточнять более длинным запросом
+     */
+    boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * @return копия номеров подошедших ключей в исходной модели
+     */
+    int[] getIndices() {
+        return Arrays.copyOf(indices, size);
+    }
+
+    /**
+     * @return сколько ключей было в исходной модели, когда начался отбор
+     */
+    int getSourceSize() {
+        return sourceSize;
+    }
+
+    RowKeysListModel getSource() {
+        return source;
+    }
+
+    String getQuery() {
+        return query;
+    }
+
+    String getEncoding() {
+        return encoding;
+    }
+}
@@ -0,0 +1,187 @@
+package brain;
+
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Параллельное чтение ключей таблицы по регионам. Каждый регион читается отдельной задачей
+ * в общем пуле потоков страницами в свою ограниченную очередь, поэтому ни одна задача не уходит
+ * далеко вперёд потребителя. Задача с полной очередью не ждёт места, а завершается и отдаёт поток пула;
+ * потребитель ставит её в пул снова, когда забирает страницу. Так недочитанные модели не держат
+ * потоки пула, нужные другим таблицам. В упорядоченном режиме страницы отдаются в порядке ключей
+ * (регион за регионом), в режиме быстрого заполнения - в порядке готовности.
+ */
+public class RegionKeysReader {
+    private static final int QUEUED_PAGES_PER_REGION = 4;
+    private static final long POLL_INTERVAL_MS = 200L;
+    // признак конца региона, сравнивается по ссылке
+    private static final List<byte[]> END_OF_REGION = new ArrayList<>(0);
+    private final Logger logger = Logger.getLogger(RegionKeysReader.class);
+    private final DatabaseWorker databaseWorker;
+    private final String tableName;
+    private final RowKeySearch search;
+    private final byte[][] startKeys;
+    private final byte[][] endKeys;
+    private final int pageSize;
+    private final boolean ordered;
+    private final List<BlockingQueue<List<byte[]>>> queues;
+    // ключ, с которого читается следующая страница региона, null - регион дочитан
+    private final byte[][] nextRows;
+    // прочитанная, но не поместившаяся в очередь страница региона
+    private final AtomicReferenceArray<List<byte[]>> pendingPages;
+    // 1 - задача региона ждёт места в очереди и не занимает поток
+    private final AtomicIntegerArray parked;
+    private volatile ExecutorService pool;
+    private volatile IOException failure;
+    private volatile boolean closed;
+    private volatile int regionsDone;
+    private int currentRegion;
+
+    /**
+     * @param search    поиск, фильтр которого применяется к каждой странице
+     * @param startKeys начальные ключи регионов по возрастанию
+     * @param endKeys   конечные ключи регионов (исключительно), пустой ключ - конец таблицы
+     * @param ordered   отдавать страницы в порядке ключей
+     */
+    public RegionKeysReader(DatabaseWorker databaseWorker, String tableName, RowKeySearch search,
+                            byte[][] startKeys, byte[][] endKeys, int pageSize, boolean ordered) {
+        this.databaseWorker = databaseWorker;
+        this.tableName = tableName;
+        this.search = search;
+        this.startKeys = startKeys;
+        this.endKeys = endKeys;
+        this.pageSize = pageSize;
+        this.ordered = ordered;
+        int queuesCount = ordered ? startKeys.length : 1;
+        int capacity = ordered ? QUEUED_PAGES_PER_REGION : QUEUED_PAGES_PER_REGION * Math.max(1, startKeys.length);
+        queues = new ArrayList<>(queuesCount);
+        for (int i = 0; i < queuesCount; i++) {
+            queues.add(new ArrayBlockingQueue<List<byte[]>>(capacity));
+        }
+        nextRows = startKeys.clone();
+        pendingPages = new AtomicReferenceArray<>(startKeys.length);
+        parked = new AtomicIntegerArray(startKeys.length);
+    }
+
+    /**
+     * Ставит чтение всех регионов в пул. Регионы отправляются по порядку, поэтому самый ранний
+     * недочитанный регион всегда уже выполняется или ждёт потребителя, и упорядоченное слияние не может зависнуть.
+     */
+    public void start(ExecutorService pool) {
+        this.pool = pool;
+        for (int i = 0; i < startKeys.length; i++) {
+            submit(i);
+        }
+    }
+
+    private void submit(final int region) {
+        pool.execute(new Runnable() {
+            @Override
+            public void run() {
+                readRegion(region);
+            }
+        });
+    }
+
+    private void readRegion(int region) {
+        BlockingQueue<List<byte[]>> queue = queues.get(ordered ? region : 0);
+        try {
+            while (!closed) {
+                List<byte[]> page = pendingPages.getAndSet(region, null);
+                if (page == null)
+                    page = readPage(region);
+                if (queue.offer(page)) {
+                    if (page == END_OF_REGION)
+                        return;
+                    continue;
+                }
+                pendingPages.set(region, page);
+                parked.set(region, 1);
+                // потребитель мог освободить место, пока задача парковалась
+                if (queue.remainingCapacity() == 0 || !parked.compareAndSet(region, 1, 0))
+                    return;
+            }
+        } catch (IOException e) {
+            logger.error(e);
+            failure = e;
+        }
+    }
+
+    private List<byte[]> readPage(int region) throws IOException {
+        byte[] startRow = nextRows[region];
+        if (startRow == null)
+            return END_OF_REGION;
+        List<byte[]> page = databaseWorker.getRowKeys(tableName, startRow, endKeys[region],
+                search.createFilter(), pageSize);
+        nextRows[region] = page.size() < pageSize ? null : DatabaseWorker.nextRow(page.get(page.size() - 1));
+        return page.isEmpty() ? END_OF_REGION : page;
+    }
+
+    /**
+     * Снова ставит в пул задачу региона, ждавшую места в очереди, если место появилось
+     */
+    private void resume(int region) {
+        if (queues.get(ordered ? region : 0).remainingCapacity() > 0 && parked.compareAndSet(region, 1, 0))
+            submit(region);
+    }
+
+    /**
+     * Ждёт следующую страницу ключей. Вызывается из одного потока-потребителя.
+     *
+     * @return страница ключей или null, если все регионы прочитаны
+     * @throws IOException если чтение одного из регионов завершилось ошибкой
+     */
+    public List<byte[]> nextPage() throws IOException, InterruptedException {
+        while (!closed && regionsDone < startKeys.length) {
+            if (failure != null)
+                throw failure;
+            int region = currentRegion;
+            List<byte[]> page = queues.get(ordered ? region : 0).poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            if (page == null)
+                continue;
+            if (ordered) {
+                resume(region);
+            } else {
+                for (int i = 0; i < startKeys.length; i++) {
+                    resume(i);
+                }
+            }
+            if (page != END_OF_REGION)
+                return page;
+            regionsDone++;
+            if (ordered)
+                currentRegion++;
+        }
+        if (failure != null)
+            throw failure;
+        return null;
+    }
+
+    public int getRegionsCount() {
+        return startKeys.length;
+    }
+
+    public int getRegionsDone() {
+        return regionsDone;
+    }
+
+    /**
+     * Останавливает чтение: выполняющиеся задачи регионов завершатся после текущей страницы,
+     * ждущие места в очередях больше не будут поставлены в пул
+     */
+    public void close() {
+        closed = true;
+        for (BlockingQueue<List<byte[]>> queue : queues) {
+            queue.clear();
+        }
+    }
+}
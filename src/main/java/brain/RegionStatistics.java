@@ -0,0 +1,90 @@
+package brain;
+
+import org.apache.hadoop.hbase.HServerLoad;
+
+/**
+ * Сведения об одном регионе таблицы: границы, сервер и нагрузка из статуса кластера
+ */
+public final class RegionStatistics {
+    private final String name;
+    private final byte[] startKey;
+    private final byte[] endKey;
+    private final String server;
+    private final HServerLoad.RegionLoad load;
+    private final long estimatedRows;
+    private final long exactRows;
+
+    /**
+     * @param server        сервер региона или null, если регион сейчас не открыт
+     * @param load          нагрузка региона или null, если сервер о нём не сообщил
+     * @param estimatedRows оценка числа строк
+     * @param exactRows     точное число строк, -1 - не считалось
+     */
+    public RegionStatistics(String name, byte[] startKey, byte[] endKey, String server, HServerLoad.RegionLoad load,
+                            long estimatedRows, long exactRows) {
+        this.name = name;
+        this.startKey = startKey;
+        this.endKey = endKey;
+        this.server = server;
+        this.load = load;
+        this.estimatedRows = estimatedRows;
+        this.exactRows = exactRows;
+    }
+
+    /**
+     * @return те же сведения с точным числом строк
+     */
+    public RegionStatistics withExactRows(long exactRows) {
+        return new RegionStatistics(name, startKey, endKey, server, load, estimatedRows, exactRows);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public byte[] getStartKey() {
+        return startKey;
+    }
+
+    /**
+     * @return конечный ключ (исключительно), пустой - конец таблицы
+     */
+    public byte[] getEndKey() {
+        return endKey;
+    }
+
+    public String getServer() {
+        return server;
+    }
+
+    public int getStorefiles() {
+        return load == null ? 0 : load.getStorefiles();
+    }
+
+    public int getStorefileSizeMB() {
+        return load == null ? 0 : load.getStorefileSizeMB();
+    }
+
+    public int getMemStoreSizeMB() {
+        return load == null ? 0 : load.getMemStoreSizeMB();
+    }
+
+    public long getReadRequests() {
+        return load == null ? 0 : load.getReadRequestsCount();
+    }
+
+    public long getWriteRequests() {
+        return load == null ? 0 : load.getWriteRequestsCount();
+    }
+
+    public long getEstimatedRows() {
+        return estimatedRows;
+    }
+
+    /**
+     * @return точное число строк, -1 - не считалось
+     */
+    public long getExactRows() {
+        return exactRows;
+    }
+}
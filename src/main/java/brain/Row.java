@@ -1,7 +1,13 @@
 package brain;
 
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
 
 /**
  * Краткое описание класса:
@@ -23,6 +29,25 @@ public class Row {
         }
     }
 
+    /**
+     * @param result прочитанная строка
+     * @param family семейство, столбцы которого попадают в Row
+     * @return столбцы семейства или null, если в семействе нет данных
+     */
+    static Row fromResult(Result result, byte[] family) {
+        NavigableMap<byte[], byte[]> familyMap = result.getFamilyMap(family);
+        if (familyMap == null)
+            return null;
+        String[] columns = new String[familyMap.size()];
+        List<byte[]> data = new ArrayList<>(familyMap.size());
+        int i = 0;
+        for (Map.Entry<byte[], byte[]> column : familyMap.entrySet()) {
+            columns[i++] = Bytes.toString(column.getKey());
+            data.add(column.getValue());
+        }
+        return new Row(columns, data);
+    }
+
     public String[] getColumns() {
         return columns;
     }
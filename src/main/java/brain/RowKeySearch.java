@@ -0,0 +1,144 @@
+package brain;
+
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.filter.CompareFilter;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.PrefixFilter;
+import org.apache.hadoop.hbase.filter.RegexStringComparator;
+import org.apache.hadoop.hbase.filter.RowFilter;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.ResourceBundle;
+import java.util.regex.Pattern;
+
+/**
+ * Поиск ключей строк на стороне регион-серверов. Запрос превращается в границы скана и фильтр:
+ * <ul>
+ * <li>{@code ^abc} - ключи с префиксом abc: границы скана по префиксу и PrefixFilter;</li>
+ * <li>{@code abc..abd} - ключи от abc включительно до abd исключительно, любая граница может быть пустой;</li>
+ * <li>{@code /регулярное выражение/} - RowFilter с RegexStringComparator по ключу в выбранной кодировке;
+ * в HEX такой поиск не поддерживается: на сервере выражение сравнивается с байтами ключа, а не с их
+ * шестнадцатеричной записью, и совпадения не соответствовали бы тому, что видит пользователь;</li>
+ * <li>всё остальное - ключи, содержащие строку как подпоследовательность байт.</li>
+ * </ul>
+ * Текст запроса переводится в байты в выбранной кодировке, для HEX - как шестнадцатеричная запись.
+ */
+public class RowKeySearch {
+    public static final RowKeySearch ALL = new RowKeySearch(HConstants.EMPTY_BYTE_ARRAY, HConstants.EMPTY_BYTE_ARRAY, null, null);
+    private static final String RANGE_SEPARATOR = "..";
+    private static final ResourceBundle resourceBundle = ResourceBundle.getBundle("MainFormResources");
+    // каждый байт становится ровно одним символом, поэтому поиск подстроки совпадает с поиском байт
+    private static final Charset BYTES_CHARSET = Charset.forName("ISO-8859-1");
+    private final byte[] startRow;
+    private final byte[] stopRow;
+    private final byte[] prefix;
+    private final String regex;
+    private final Charset regexCharset;
+
+    private RowKeySearch(byte[] startRow, byte[] stopRow, byte[] prefix, String regex) {
+        this(startRow, stopRow, prefix, regex, BYTES_CHARSET);
+    }
+
+    private RowKeySearch(byte[] startRow, byte[] stopRow, byte[] prefix, String regex, Charset regexCharset) {
+        this.startRow = startRow;
+        this.stopRow = stopRow;
+        this.prefix = prefix;
+        this.regex = regex;
+        this.regexCharset = regexCharset;
+    }
+
+    /**
+     * @param query    текст запроса
+     * @param encoding кодировка, в которой пользователь видит ключи
+     * @return поиск; пустой запрос означает все ключи
+     * @throws Exception если запрос не переводится в выбранную кодировку или это регулярное выражение в HEX
+     */
+    public static RowKeySearch parse(String query, String encoding) throws Exception {
+        if (query == null || query.isEmpty())
+            return ALL;
+        if (query.startsWith("^") && query.length() > 1) {
+            byte[] prefix = toBytes(query.substring(1), encoding);
+            return new RowKeySearch(prefix, stopRowForPrefix(prefix), prefix, null);
+        }
+        if (query.length() > 2 && query.startsWith("/") && query.endsWith("/")) {
+            if (Constants.HEX.equals(encoding))
+                throw new Exception(resourceBundle.getString("regexInHex"));
+            Charset charset = Charset.forName(encoding);
+            String regex = query.substring(1, query.length() - 1);
+            Pattern.compile(regex);
+            return new RowKeySearch(HConstants.EMPTY_BYTE_ARRAY, HConstants.EMPTY_BYTE_ARRAY, null, regex, charset);
+        }
+        int separator = query.indexOf(RANGE_SEPARATOR);
+        if (separator >= 0) {
+            byte[] from = toBytes(query.substring(0, separator), encoding);
+            byte[] to = toBytes(query.substring(separator + RANGE_SEPARATOR.length()), encoding);
+            return new RowKeySearch(from, to, null, null);
+        }
+        String substring = new String(toBytes(query, encoding), BYTES_CHARSET);
+        return new RowKeySearch(HConstants.EMPTY_BYTE_ARRAY, HConstants.EMPTY_BYTE_ARRAY, null, Pattern.quote(substring));
+    }
+
+    private static byte[] toBytes(String string, String encoding) throws Exception {
+        byte[] bytes = BytesToStringConverter.toBytes(string, encoding);
+        if (bytes == null)
+            throw new Exception("Unsupported encoding " + encoding);
+        return bytes;
+    }
+
+    /**
+     * @return наименьший ключ, больший всех ключей с данным префиксом, или пустой ключ - конец таблицы
+     */
+    private static byte[] stopRowForPrefix(byte[] prefix) {
+        for (int i = prefix.length - 1; i >= 0; i--) {
+            if (prefix[i] != (byte) 0xFF) {
+                byte[] stopRow = Arrays.copyOf(prefix, i + 1);
+                stopRow[i]++;
+                return stopRow;
+            }
+        }
+        return HConstants.EMPTY_BYTE_ARRAY;
+    }
+
+    /**
+     * @return новый фильтр для очередного скана или null, если хватает границ скана
+     */
+    public Filter createFilter() {
+        if (prefix != null)
+            return new PrefixFilter(prefix);
+        if (regex != null) {
+            RegexStringComparator comparator = new RegexStringComparator(regex);
+            comparator.setCharset(regexCharset);
+            return new RowFilter(CompareFilter.CompareOp.EQUAL, comparator);
+        }
+        return null;
+    }
+
+    /**
+     * @return начало пересечения поиска с регионом [regionStart, regionEnd)
+     */
+    public byte[] clampStart(byte[] regionStart) {
+        return Bytes.compareTo(startRow, regionStart) > 0 ? startRow : regionStart;
+    }
+
+    /**
+     * @return конец пересечения поиска с регионом [regionStart, regionEnd), пустой ключ - конец таблицы
+     */
+    public byte[] clampStop(byte[] regionEnd) {
+        if (stopRow.length == 0)
+            return regionEnd;
+        if (regionEnd.length == 0)
+            return stopRow;
+        return Bytes.compareTo(stopRow, regionEnd) < 0 ? stopRow : regionEnd;
+    }
+
+    /**
+     * @return пересекается ли поиск с регионом [regionStart, regionEnd)
+     */
+    public boolean intersects(byte[] regionStart, byte[] regionEnd) {
+        byte[] start = clampStart(regionStart);
+        byte[] stop = clampStop(regionEnd);
+        return stop.length == 0 || Bytes.compareTo(start, stop) < 0;
+    }
+}
@@ -0,0 +1,120 @@
+package brain;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Компактное хранилище ключей строк одной таблицы: все ключи лежат подряд в одном массиве байт,
+ * а начало каждого ключа записано в массив смещений. Вместо объекта на каждую строку
+ * хранилище держит два растущих массива, что заметно экономит память на больших таблицах.
+ */
+public class RowKeyStore {
+    private static final int INITIAL_KEYS = 1024;
+    private static final int INITIAL_KEY_LENGTH = 16;
+    private byte[] arena = new byte[INITIAL_KEYS * INITIAL_KEY_LENGTH];
+    // offsets[i] - начало i-го ключа, offsets[size] - конец последнего
+    private int[] offsets = new int[INITIAL_KEYS + 1];
+    private int size;
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized void add(byte[] key) {
+        if (size + 1 == offsets.length)
+            offsets = Arrays.copyOf(offsets, offsets.length + (offsets.length >> 1));
+        int end = offsets[size];
+        if (end + key.length > arena.length)
+            arena = Arrays.copyOf(arena, Math.max(end + key.length, arena.length + (arena.length >> 1)));
+        System.arraycopy(key, 0, arena, end, key.length);
+        offsets[++size] = end + key.length;
+    }
+
+    public synchronized void addAll(List<byte[]> keys) {
+        for (byte[] key : keys) {
+            add(key);
+        }
+    }
+
+    /**
+     * @param index номер ключа
+     * @return копия байт ключа
+     */
+    public synchronized byte[] get(int index) {
+        checkIndex(index);
+        return Arrays.copyOfRange(arena, offsets[index], offsets[index + 1]);
+    }
+
+    /**
+     * Декодирует ключ прямо из общего массива, не копируя его байты
+     *
+     * @param index    номер ключа
+     * @param encoding кодировка или {@link Constants#HEX}
+     * @return строковое представление ключа
+     */
+    public synchronized String decode(int index, String encoding) throws UnsupportedEncodingException {
+        checkIndex(index);
+        return BytesToStringConverter.toString(arena, offsets[index], offsets[index + 1] - offsets[index], encoding);
+    }
+
+    /**
+     * @return последний добавленный ключ или null, если хранилище пусто
+     */
+    public synchronized byte[] last() {
+        return size == 0 ? null : get(size - 1);
+    }
+
+    /**
+     * Снимок уже добавленных ключей. Хранилище только дописывается, а при росте копирует массивы,
+     * поэтому ключи снимка больше не меняются и его можно читать из многих потоков без блокировок.
+     */
+    public synchronized Snapshot snapshot() {
+        return new Snapshot(arena, offsets, size);
+    }
+
+    /**
+     * @return количество байт, занятых массивами хранилища
+     */
+    public synchronized long memoryUsage() {
+        return arena.length + 4L * offsets.length;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+    }
+
+    public static final class Snapshot {
+        private final byte[] arena;
+        private final int[] offsets;
+        private final int size;
+
+        private Snapshot(byte[] arena, int[] offsets, int size) {
+            this.arena = arena;
+            this.offsets = offsets;
+            this.size = size;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public String decode(int index, String encoding) throws UnsupportedEncodingException {
+            if (index < 0 || index >= size)
+                throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+            return BytesToStringConverter.toString(arena, offsets[index], offsets[index + 1] - offsets[index], encoding);
+        }
+
+        /**
+         * @return строки ключей [from, to) в заданной кодировке
+         */
+        public String[] decode(int from, int to, String encoding) throws UnsupportedEncodingException {
+            if (from < 0 || to > size || from > to)
+                throw new IndexOutOfBoundsException("From: " + from + ", to: " + to + ", size: " + size);
+            String[] strings = new String[to - from];
+            BytesToStringConverter.toStrings(arena, offsets, from, to, encoding, strings, 0);
+            return strings;
+        }
+    }
+}
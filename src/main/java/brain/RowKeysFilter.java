@@ -0,0 +1,198 @@
+package brain;
+
+import org.apache.log4j.Logger;
+
+import javax.swing.*;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Отбор уже прочитанных ключей таблицы по подстроке. Одновременно выполняется только один отбор:
+ * новый запрос отменяет предыдущий. Ключи делятся на блоки, которые проверяются параллельно
+ * в пуле fork/join, а результаты блоков публикуются по порядку, поэтому совпадения появляются
+ * в списке в порядке ключей ещё до окончания отбора. Если новый запрос продолжает предыдущий,
+ * проверяются только ключи, подошедшие под предыдущий запрос, и ключи, прочитанные после него.
+ */
+public class RowKeysFilter {
+    // признак конца отбора, сравнивается по ссылке
+    static final int[] END_OF_PASS = new int[0];
+    private static final int BLOCK_SIZE = 16384;
+    private static final int SPLIT_THRESHOLD = 2048;
+    private final Logger logger = Logger.getLogger(RowKeysFilter.class);
+    private final ForkJoinPool pool = new ForkJoinPool();
+    private final int maxBlocksInFlight = pool.getParallelism() * 2;
+    private final ExecutorService coordinator = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "row-keys-filter");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private Pass current;
+    private FilteredRowKeysListModel previous;
+
+    /**
+     * Начинает отбор ключей, отменяя предыдущий. Вызывается в потоке обработки событий Swing.
+     *
+     * @param source      модель со всеми прочитанными ключами таблицы
+     * @param query       непустая подстрока
+     * @param encoding    кодировка, в которой ключи сравниваются с подстрокой
+     * @param progressBar индикатор проверенных ключей
+     * @return модель, которая пополняется совпадениями по мере отбора
+     */
+    public FilteredRowKeysListModel filter(RowKeysListModel source, String query, String encoding, JProgressBar progressBar) {
+        cancel();
+        RowKeyStore.Snapshot snapshot = source.snapshot();
+        int[] candidates = null;
+        int appendedFrom = 0;
+        if (previous != null && previous.isComplete() && previous.getSource() == source
+                && previous.getEncoding().equals(encoding) && query.contains(previous.getQuery())) {
+            candidates = previous.getIndices();
+            appendedFrom = previous.getSourceSize();
+        }
+        FilteredRowKeysListModel target = new FilteredRowKeysListModel(source, snapshot.size(), query, encoding, progressBar);
+        current = new Pass(snapshot, candidates, appendedFrom, query, encoding, target);
+        coordinator.execute(current);
+        previous = target;
+        return target;
+    }
+
+    /**
+     * Отменяет текущий отбор; уже опубликованные совпадения остаются в его модели
+     */
+    public void cancel() {
+        if (current != null) {
+            current.cancelled = true;
+            current = null;
+        }
+    }
+
+    public void close() {
+        cancel();
+        coordinator.shutdownNow();
+        pool.shutdownNow();
+    }
+
+    /**
+     * Один проход отбора. Кандидаты - либо все ключи снимка, либо совпадения предыдущего прохода
+     * и ключи снимка начиная с appendedFrom.
+     */
+    private class Pass implements Runnable {
+        private final RowKeyStore.Snapshot snapshot;
+        private final int[] candidates;
+        private final int appendedFrom;
+        private final int total;
+        private final String query;
+        private final String encoding;
+        private final FilteredRowKeysListModel target;
+        private final ChunkPublisher<int[]> publisher;
+        private volatile boolean cancelled;
+
+        private Pass(RowKeyStore.Snapshot snapshot, int[] candidates, int appendedFrom,
+                     String query, String encoding, FilteredRowKeysListModel target) {
+            this.snapshot = snapshot;
+            this.candidates = candidates;
+            this.appendedFrom = candidates == null ? 0 : appendedFrom;
+            this.total = (candidates == null ? 0 : candidates.length) + snapshot.size() - this.appendedFrom;
+            this.query = query;
+            this.encoding = encoding;
+            this.target = target;
+            this.publisher = new ChunkPublisher<>(target);
+        }
+
+        private int candidate(int i) {
+            if (candidates == null)
+                return i;
+            return i < candidates.length ? candidates[i] : appendedFrom + i - candidates.length;
+        }
+
+        @Override
+        public void run() {
+            Deque<ForkJoinTask<int[]>> inFlight = new ArrayDeque<>();
+            int submitted = 0;
+            int scanned = 0;
+            try {
+                while (!cancelled && (submitted < total || !inFlight.isEmpty())) {
+                    if (submitted < total && inFlight.size() < maxBlocksInFlight) {
+                        int to = Math.min(total, submitted + BLOCK_SIZE);
+                        inFlight.add(pool.submit(new Block(this, submitted, to)));
+                        submitted = to;
+                        continue;
+                    }
+                    int[] matches = inFlight.poll().join();
+                    scanned = Math.min(total, scanned + BLOCK_SIZE);
+                    if (matches.length > 0)
+                        publisher.offer(Collections.singletonList(matches));
+                    target.setProgress(scanned, total);
+                }
+                if (!cancelled)
+                    publisher.offer(Collections.singletonList(END_OF_PASS));
+            } catch (RuntimeException e) {
+                logger.error(e);
+            } finally {
+                for (ForkJoinTask<int[]> task : inFlight) {
+                    task.cancel(false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Проверка кандидатов [from, to) прохода, делится пополам до {@link #SPLIT_THRESHOLD}
+     */
+    private static class Block extends RecursiveTask<int[]> {
+        private final Pass pass;
+        private final int from;
+        private final int to;
+
+        private Block(Pass pass, int from, int to) {
+            this.pass = pass;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected int[] compute() {
+            if (to - from > SPLIT_THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                Block right = new Block(pass, middle, to);
+                right.fork();
+                int[] leftMatches = new Block(pass, from, middle).compute();
+                int[] rightMatches = right.join();
+                int[] matches = Arrays.copyOf(leftMatches, leftMatches.length + rightMatches.length);
+                System.arraycopy(rightMatches, 0, matches, leftMatches.length, rightMatches.length);
+                return matches;
+            }
+            int[] matches = new int[to - from];
+            int count = 0;
+            try {
+                if (pass.candidates == null) {
+                    String[] keys = pass.snapshot.decode(from, to, pass.encoding);
+                    for (int i = 0; i < keys.length; i++) {
+                        if (keys[i].contains(pass.query))
+                            matches[count++] = from + i;
+                    }
+                    return Arrays.copyOf(matches, count);
+                }
+                for (int i = from; i < to && !pass.cancelled; i++) {
+                    int index = pass.candidate(i);
+                    if (pass.snapshot.decode(index, pass.encoding).contains(pass.query))
+                        matches[count++] = index;
+                }
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalArgumentException(e);
+            }
+            return Arrays.copyOf(matches, count);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package brain;
+
+import com.yammer.metrics.core.TimerContext;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.log4j.Logger;
+
+import javax.swing.*;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.text.MessageFormat;
+import java.util.*;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Модель списка ключей строк таблицы, которая подгружается страницами по мере прокрутки.
+ * Сырые ключи уже прочитанных строк лежат в одном {@link RowKeyStore}, а смена кодировки
+ * лишь переключает способ их декодирования. Декодируются только ячейки, которые JList
+ * запрашивает для отрисовки, последние результаты держатся в ограниченном LRU-кэше.
+ * Страницы читаются собственным фоновым потоком модели и публикуются в модель порциями с ограниченной частотой кадров,
+ * все изменения модели выполняются в потоке обработки событий Swing.
+ */
+public class RowKeysListModel extends AbstractListModel<String> implements RowKeysView, ChunkPublisher.Consumer<byte[]> {
+    public static final int PAGE_SIZE = 1000;
+    private static final int PREFETCH_DISTANCE = PAGE_SIZE / 2;
+    private static final int DECODED_CACHE_SIZE = 2048;
+    private static final ResourceBundle resourceBundle = ResourceBundle.getBundle("MainFormResources");
+    private static final long LOADER_KEEP_ALIVE_SECONDS = 60L;
+    private final Logger logger = Logger.getLogger(RowKeysListModel.class);
+    private final DatabaseWorker databaseWorker;
+    private final String tableName;
+    private final RowKeySearch search;
+    private final JProgressBar progressBar;
+    private final RowKeyStore keys = new RowKeyStore();
+    // у каждой модели свой поток чтения: долгий поиск не задерживает список другой таблицы,
+    // а простаивающий поток завершается
+    private final ThreadPoolExecutor pageLoader;
+    private final ChunkPublisher<byte[]> publisher = new ChunkPublisher<>(this);
+    private final Map<Integer, String> decoded = new LinkedHashMap<Integer, String>(DECODED_CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest) {
+            return size() > DECODED_CACHE_SIZE;
+        }
+    };
+    private final AtomicBoolean loading = new AtomicBoolean();
+    private final AtomicInteger wanted = new AtomicInteger();
+    private volatile String encoding;
+    private volatile boolean exhausted;
+    // состояние фонового чтения
+    private volatile RegionKeysReader reader;
+    private volatile boolean closed;
+    private volatile int fetched;
+    private volatile long fetchedBytes;
+
+    public RowKeysListModel(DatabaseWorker databaseWorker, String tableName, String encoding, JProgressBar progressBar) {
+        this(databaseWorker, tableName, RowKeySearch.ALL, encoding, progressBar);
+    }
+
+    /**
+     * @param search поиск, ключи которого попадут в модель; фильтрация выполняется на регион-серверах
+     */
+    public RowKeysListModel(DatabaseWorker databaseWorker, String tableName, RowKeySearch search, String encoding,
+                            JProgressBar progressBar) {
+        this.databaseWorker = databaseWorker;
+        this.tableName = tableName;
+        this.search = search;
+        this.encoding = encoding;
+        this.progressBar = progressBar;
+        pageLoader = new ThreadPoolExecutor(0, 1, LOADER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "row-keys-page-loader-" + RowKeysListModel.this.tableName);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    @Override
+    public int getSize() {
+        return keys.size();
+    }
+
+    /**
+     * Возвращает ключ в выбранной кодировке. Если запрошенная ячейка близка к концу
+     * прочитанной части таблицы, заранее запрашивает следующую страницу.
+     */
+    @Override
+    public String getElementAt(int index) {
+        if (index >= keys.size() - PREFETCH_DISTANCE && SwingUtilities.isEventDispatchThread())
+            requestRows(index + PAGE_SIZE);
+        synchronized (decoded) {
+            String value = decoded.get(index);
+            if (value == null) {
+                TimerContext timer = Diagnostics.timeDecode();
+                try {
+                    value = keys.decode(index, encoding);
+                } catch (UnsupportedEncodingException e) {
+                    logger.error(e);
+                    value = Bytes.toStringBinary(keys.get(index));
+                } finally {
+                    timer.stop();
+                }
+                decoded.put(index, value);
+            }
+            return value;
+        }
+    }
+
+    @Override
+    public byte[] getKeyAt(int index) {
+        return keys.get(index);
+    }
+
+    /**
+     * @return неизменяемый снимок уже прочитанных ключей для чтения из других потоков
+     */
+    public RowKeyStore.Snapshot snapshot() {
+        return keys.snapshot();
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public boolean isExhausted() {
+        return exhausted;
+    }
+
+    /**
+     * Меняет кодировку отображения. Ключи не перечитываются, JList лишь перерисовывает видимые ячейки.
+     */
+    public void setEncoding(String encoding) {
+        if (encoding.equals(this.encoding))
+            return;
+        synchronized (decoded) {
+            this.encoding = encoding;
+            decoded.clear();
+        }
+        if (keys.size() > 0)
+            fireContentsChanged(this, 0, keys.size() - 1);
+    }
+
+    /**
+     * Просит подгрузить ещё одну страницу ключей сверх уже прочитанных
+     */
+    public void loadNextPage() {
+        requestRows(keys.size() + PAGE_SIZE);
+    }
+
+    /**
+     * Просит держать прочитанными не меньше указанного количества ключей. Регионы таблицы читаются
+     * параллельно {@link RegionKeysReader}, а готовые страницы публикуются в модель через {@link ChunkPublisher}.
+     * Повторные вызовы, пока идёт чтение, лишь увеличивают требуемое количество.
+     */
+    public void requestRows(int count) {
+        if (exhausted)
+            return;
+        int current;
+        do {
+            current = wanted.get();
+        } while (current < count && !wanted.compareAndSet(current, count));
+        if (fetched < count && loading.compareAndSet(false, true)) {
+            progressBar.setVisible(true);
+            pageLoader.execute(new Runnable() {
+                @Override
+                public void run() {
+                    readPages();
+                }
+            });
+        }
+    }
+
+    /**
+     * Фоновое чтение страниц, пока прочитано меньше, чем требуется, и таблица не закончилась
+     */
+    private void readPages() {
+        try {
+            if (reader == null) {
+                reader = databaseWorker.readRowKeysByRegions(tableName, search, PAGE_SIZE);
+                // модель могли закрыть, пока чтение запускалось
+                if (closed)
+                    reader.close();
+            }
+            do {
+                while (!exhausted && fetched < wanted.get()) {
+                    List<byte[]> page = reader.nextPage();
+                    if (page == null || closed) {
+                        exhausted = true;
+                        break;
+                    }
+                    long bytes = 0;
+                    for (byte[] key : page) {
+                        bytes += key.length;
+                    }
+                    fetchedBytes += bytes;
+                    fetched += page.size();
+                    publisher.offer(page);
+                }
+                loading.set(false);
+                // спрос мог вырасти, пока мы решали остановиться
+            } while (!exhausted && fetched < wanted.get() && loading.compareAndSet(false, true));
+        } catch (IOException | InterruptedException e) {
+            logger.error(e);
+            exhausted = true;
+            loading.set(false);
+        }
+        // пустая порция гарантирует ещё один кадр, который спрячет индикатор прогресса
+        publisher.offer(Collections.<byte[]>emptyList());
+    }
+
+    @Override
+    public void publish(List<byte[]> chunk) {
+        if (chunk.isEmpty())
+            return;
+        int from = keys.size();
+        keys.addAll(chunk);
+        fireIntervalAdded(this, from, keys.size() - 1);
+    }
+
+    @Override
+    public void frameFinished() {
+        if (!loading.get()) {
+            progressBar.setVisible(false);
+            return;
+        }
+        int regionsTotal = reader == null ? 0 : reader.getRegionsCount();
+        int regionsDone = reader == null ? 0 : reader.getRegionsDone();
+        progressBar.setIndeterminate(regionsTotal == 0);
+        progressBar.setMaximum(regionsTotal);
+        progressBar.setValue(regionsDone);
+        progressBar.setStringPainted(true);
+        progressBar.setString(MessageFormat.format(resourceBundle.getString("rowsProgress"),
+                regionsDone, regionsTotal, keys.size(), fetchedBytes / 1024));
+    }
+
+    /**
+     * Прекращает фоновое чтение и отпускает поток чтения, модель больше не будет пополняться
+     */
+    public void close() {
+        closed = true;
+        exhausted = true;
+        RegionKeysReader currentReader = reader;
+        if (currentReader != null)
+            currentReader.close();
+        pageLoader.shutdown();
+    }
+}
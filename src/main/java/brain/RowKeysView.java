@@ -0,0 +1,14 @@
+package brain;
+
+import javax.swing.*;
+
+/**
+ * Список ключей строк, отображаемый в JList, с доступом к исходным байтам ключей
+ */
+public interface RowKeysView extends ListModel<String> {
+    /**
+     * @param index номер строки в списке
+     * @return исходные байты ключа строки
+     */
+    byte[] getKeyAt(int index);
+}
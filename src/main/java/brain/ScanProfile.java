@@ -0,0 +1,123 @@
+package brain;
+
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.FirstKeyOnlyFilter;
+import org.apache.hadoop.hbase.filter.KeyOnlyFilter;
+
+/**
+ * Параметры сканирования таблицы при просмотре её ключей: сколько строк забирать за один RPC,
+ * размер пачки столбцов, кэширование блоков на регион-сервере, чтение только ключей и
+ * быстрое заполнение списка без соблюдения порядка ключей между регионами.
+ * Сохраняется в preferences строкой вида {@code caching=1000,batch=0,cacheBlocks=false,keyOnly=true,fastFill=false}.
+ */
+public class ScanProfile {
+    public static final ScanProfile BROWSE = new ScanProfile(1000, 0, false, true, false);
+    private final int caching;
+    private final int batch;
+    private final boolean cacheBlocks;
+    private final boolean keyOnly;
+    private final boolean fastFill;
+
+    public ScanProfile(int caching, int batch, boolean cacheBlocks, boolean keyOnly, boolean fastFill) {
+        this.caching = caching;
+        this.batch = batch;
+        this.cacheBlocks = cacheBlocks;
+        this.keyOnly = keyOnly;
+        this.fastFill = fastFill;
+    }
+
+    /**
+     * Настраивает скан по профилю. Читается одна версия и только первая ячейка каждой строки,
+     * а при {@link #isKeyOnly()} ещё и без значений.
+     *
+     * @param scan  скан
+     * @param limit сколько строк нужно вызывающему, кэширование не делается больше этого
+     * @return тот же скан
+     */
+    public Scan applyTo(Scan scan, int limit) {
+        scan.setCaching(Math.min(caching, limit));
+        if (batch > 0)
+            scan.setBatch(batch);
+        scan.setCacheBlocks(cacheBlocks);
+        scan.setMaxVersions(1);
+        Filter firstKeyOnly = new FirstKeyOnlyFilter();
+        scan.setFilter(keyOnly ? new FilterList(firstKeyOnly, new KeyOnlyFilter()) : firstKeyOnly);
+        return scan;
+    }
+
+    public int getCaching() {
+        return caching;
+    }
+
+    public int getBatch() {
+        return batch;
+    }
+
+    public boolean isCacheBlocks() {
+        return cacheBlocks;
+    }
+
+    public boolean isKeyOnly() {
+        return keyOnly;
+    }
+
+    /**
+     * @return показывать ключи в порядке готовности регионов, а не в порядке ключей
+     */
+    public boolean isFastFill() {
+        return fastFill;
+    }
+
+    /**
+     * @param value строка из preferences, может быть null
+     * @return профиль; отсутствующие или испорченные поля берутся из {@link #BROWSE}
+     */
+    public static ScanProfile parse(String value) {
+        if (value == null)
+            return BROWSE;
+        int caching = BROWSE.caching;
+        int batch = BROWSE.batch;
+        boolean cacheBlocks = BROWSE.cacheBlocks;
+        boolean keyOnly = BROWSE.keyOnly;
+        boolean fastFill = BROWSE.fastFill;
+        for (String pair : value.split(",")) {
+            String[] keyValue = pair.split("=", 2);
+            if (keyValue.length != 2)
+                continue;
+            String field = keyValue[0].trim();
+            String fieldValue = keyValue[1].trim();
+            try {
+                switch (field) {
+                    case "caching":
+                        caching = Math.max(1, Integer.parseInt(fieldValue));
+                        break;
+                    case "batch":
+                        batch = Math.max(0, Integer.parseInt(fieldValue));
+                        break;
+                    case "cacheBlocks":
+                        cacheBlocks = Boolean.parseBoolean(fieldValue);
+                        break;
+                    case "keyOnly":
+                        keyOnly = Boolean.parseBoolean(fieldValue);
+                        break;
+                    case "fastFill":
+                        fastFill = Boolean.parseBoolean(fieldValue);
+                        break;
+                }
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return new ScanProfile(caching, batch, cacheBlocks, keyOnly, fastFill);
+    }
+
+    @Override
+    public String toString() {
+        return "caching=" + caching +
+                ",batch=" + batch +
+                ",cacheBlocks=" + cacheBlocks +
+                ",keyOnly=" + keyOnly +
+                ",fastFill=" + fastFill;
+    }
+}
@@ -0,0 +1,92 @@
+package brain;
+
+import org.apache.log4j.Logger;
+
+import javax.swing.*;
+
+/**
+ * Поэтапный запуск. Пока в потоке обработки событий строится окно, в фоне параллельно загружаются классы
+ * клиента HBase и создаётся {@link DatabaseWorker} с разбором настроек Hadoop и HBase, а затем читается
+ * список таблиц. Результаты передаются в поток обработки событий по мере готовности.
+ */
+public final class StartupLoader {
+    // классы, которые иначе загружались бы при первом подключении
+    private static final String[] CLIENT_CLASSES = {
+            "org.apache.hadoop.hbase.client.HConnectionManager",
+            "org.apache.hadoop.hbase.client.HTable",
+            "org.apache.hadoop.hbase.client.HTablePool",
+            "org.apache.hadoop.hbase.client.HBaseAdmin",
+            "org.apache.hadoop.hbase.client.Scan",
+            "org.apache.hadoop.hbase.client.Get",
+            "org.apache.hadoop.hbase.client.Result",
+            "org.apache.hadoop.hbase.HTableDescriptor",
+            "org.apache.hadoop.hbase.HColumnDescriptor",
+            "org.apache.hadoop.hbase.ipc.HBaseRPC",
+            "org.apache.hadoop.hbase.zookeeper.ZooKeeperWatcher",
+            "org.apache.zookeeper.ZooKeeper"
+    };
+    private static final Logger logger = Logger.getLogger(StartupLoader.class);
+
+    private StartupLoader() {
+    }
+
+    /**
+     * Запускает фоновую подготовку и сразу возвращается
+     *
+     * @param workerCallback получит готовый {@link DatabaseWorker} с загруженными настройками
+     * @param tablesCallback получит первый список таблиц кластера
+     */
+    public static void start(final TaskCallback<DatabaseWorker> workerCallback,
+                             final TaskCallback<String[]> tablesCallback) {
+        startDaemon("startup-classes", new Runnable() {
+            @Override
+            public void run() {
+                ClassLoader classLoader = StartupLoader.class.getClassLoader();
+                for (String className : CLIENT_CLASSES) {
+                    try {
+                        Class.forName(className, true, classLoader);
+                    } catch (ClassNotFoundException | LinkageError e) {
+                        logger.debug("Cannot preload " + className, e);
+                    }
+                }
+            }
+        });
+        startDaemon("startup-worker", new Runnable() {
+            @Override
+            public void run() {
+                final DatabaseWorker databaseWorker;
+                try {
+                    databaseWorker = new DatabaseWorker();
+                    databaseWorker.loadProperties();
+                } catch (RuntimeException e) {
+                    deliver(workerCallback, null, e);
+                    return;
+                }
+                deliver(workerCallback, databaseWorker, null);
+                try {
+                    deliver(tablesCallback, databaseWorker.getTableNames(), null);
+                } catch (Exception e) {
+                    deliver(tablesCallback, null, e);
+                }
+            }
+        });
+    }
+
+    private static void startDaemon(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static <T> void deliver(final TaskCallback<T> callback, final T result, final Throwable cause) {
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                if (cause == null)
+                    callback.succeeded(result);
+                else
+                    callback.failed(cause);
+            }
+        });
+    }
+}
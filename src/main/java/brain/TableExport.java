@@ -0,0 +1,270 @@
+package brain;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.HTableInterface;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Потоковый экспорт таблицы в файл. Ячейки читаются сканом без кэширования блоков маленькими порциями
+ * ({@link #CACHING} строк по {@link #BATCH} ячеек) и сразу пишутся в файл, поэтому расход памяти не зависит
+ * от размера таблицы. При параллельном экспорте каждый регион пишется своим потоком в отдельный файл части:
+ * части склеиваемых форматов по готовности дописываются в итоговый файл в порядке ключей и удаляются,
+ * остальные форматы оставляют части {@code part-m-NNNNN} в каталоге с именем итогового файла.
+ */
+public class TableExport extends BulkOperation {
+    private static final int CACHING = 100;
+    private static final int BATCH = 100;
+    private static final String PART_PREFIX = "part-m-";
+    private final ConnectionManager connectionManager;
+    private final Configuration configuration;
+    private final String tableName;
+    private final RowKeySearch search;
+    private final byte[][] families;
+    private final ExportFormat format;
+    private final CellText text;
+    private final File target;
+    private final byte[][] startKeys;
+    private final byte[][] endKeys;
+    private final int threads;
+    private final AtomicInteger regionsDone = new AtomicInteger();
+    // каталог частей создан этим экспортом и удаляется целиком при отмене
+    private boolean createdDirectory;
+
+    /**
+     * @param families  экспортируемые семейства, пустой массив - все
+     * @param startKeys начальные ключи частей по возрастанию
+     * @param endKeys   конечные ключи частей (исключительно), пустой ключ - конец таблицы
+     * @param threads   сколько частей читать одновременно, 1 - всю таблицу одним сканом в один файл
+     */
+    TableExport(ConnectionManager connectionManager, Configuration configuration, String tableName,
+                RowKeySearch search, byte[][] families, ExportFormat format, CellText text, File target,
+                byte[][] startKeys, byte[][] endKeys, int threads) {
+        super("table-export-" + tableName);
+        this.connectionManager = connectionManager;
+        this.configuration = configuration;
+        this.tableName = tableName;
+        this.search = search;
+        this.families = families;
+        this.format = format;
+        this.text = text;
+        this.target = target;
+        this.startKeys = startKeys;
+        this.endKeys = endKeys;
+        this.threads = threads;
+    }
+
+    @Override
+    protected void execute() throws Exception {
+        if (threads > 1)
+            exportParallel();
+        else
+            exportSequential();
+    }
+
+    private void exportSequential() throws IOException {
+        byte[] stopRow = endKeys.length == 0 ? HConstants.EMPTY_BYTE_ARRAY : endKeys[endKeys.length - 1];
+        byte[] startRow = startKeys.length == 0 ? HConstants.EMPTY_BYTE_ARRAY : startKeys[0];
+        ExportWriter writer = format.open(target, text, configuration);
+        try {
+            if (startKeys.length > 0)
+                exportRange(startRow, stopRow, writer);
+        } finally {
+            writer.close();
+        }
+        regionsDone.set(startKeys.length);
+    }
+
+    private void exportParallel() throws Exception {
+        if (!format.isConcatenable() && !target.isDirectory()) {
+            if (!target.mkdirs())
+                throw new IOException("Cannot create directory " + target);
+            createdDirectory = true;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger number = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "table-export-region-" + number.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            List<Future<File>> parts = new ArrayList<>(startKeys.length);
+            for (int i = 0; i < startKeys.length; i++) {
+                final int region = i;
+                parts.add(pool.submit(new Callable<File>() {
+                    @Override
+                    public File call() throws Exception {
+                        return exportRegion(region);
+                    }
+                }));
+            }
+            if (format.isConcatenable())
+                concatenate(parts);
+            else {
+                for (Future<File> part : parts) {
+                    part.get();
+                }
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private File exportRegion(int region) throws IOException {
+        File part = getPart(region);
+        ExportWriter writer = format.open(part, text, configuration);
+        try {
+            exportRange(startKeys[region], endKeys[region], writer);
+        } finally {
+            writer.close();
+        }
+        regionsDone.incrementAndGet();
+        return part;
+    }
+
+    /**
+     * Дописывает части в итоговый файл в порядке регионов, не дожидаясь остальных
+     */
+    private void concatenate(List<Future<File>> parts) throws Exception {
+        FileChannel output = new FileOutputStream(target).getChannel();
+        try {
+            for (Future<File> future : parts) {
+                File part = future.get();
+                FileChannel input = new FileInputStream(part).getChannel();
+                try {
+                    long position = 0;
+                    long size = input.size();
+                    while (position < size && !isCancelled()) {
+                        position += input.transferTo(position, size - position, output);
+                    }
+                } finally {
+                    input.close();
+                }
+                if (!part.delete())
+                    logger.warn("Cannot delete " + part);
+            }
+        } finally {
+            output.close();
+        }
+    }
+
+    private void exportRange(byte[] startRow, byte[] stopRow, ExportWriter writer) throws IOException {
+        Scan scan = new Scan(startRow, stopRow);
+        scan.setCaching(CACHING);
+        scan.setBatch(BATCH);
+        scan.setCacheBlocks(false);
+        scan.setMaxVersions(1);
+        for (byte[] family : families) {
+            scan.addFamily(family);
+        }
+        Filter filter = search.createFilter();
+        if (filter != null)
+            scan.setFilter(filter);
+        HTableInterface table = connectionManager.getTable(tableName);
+        try {
+            ResultScanner scanner = table.getScanner(scan);
+            try {
+                byte[] lastRow = null;
+                Result result;
+                while (!isCancelled() && (result = scanner.next()) != null) {
+                    long resultBytes = 0;
+                    KeyValue[] resultCells = result.raw();
+                    for (KeyValue cell : resultCells) {
+                        writer.write(cell);
+                        resultBytes += cell.getLength();
+                    }
+                    // длинная строка приходит несколькими пачками
+                    if (lastRow == null || !Bytes.equals(lastRow, result.getRow())) {
+                        rows.incrementAndGet();
+                        lastRow = result.getRow();
+                    }
+                    cells.addAndGet(resultCells.length);
+                    bytes.addAndGet(resultBytes);
+                }
+            } finally {
+                scanner.close();
+            }
+        } finally {
+            table.close();
+        }
+    }
+
+    private File getPart(int region) {
+        String name = PART_PREFIX + String.format("%05d", region);
+        return format.isConcatenable() ? new File(target.getPath() + '.' + name) : new File(target, name);
+    }
+
+    /**
+     * Удаляет части и итоговый файл вместе с контрольными суммами {@code .имя.crc}, которые пишет Hadoop.
+     * Каталог частей, созданный этим экспортом, удаляется целиком, а существовавший раньше остаётся.
+     */
+    @Override
+    protected void discard() {
+        if (createdDirectory) {
+            deleteRecursively(target);
+            return;
+        }
+        for (int i = 0; i < startKeys.length && threads > 1; i++) {
+            deleteWithChecksum(getPart(i));
+        }
+        if (!target.isDirectory())
+            deleteWithChecksum(target);
+    }
+
+    private void deleteWithChecksum(File file) {
+        if (!file.delete() && file.exists())
+            logger.warn("Cannot delete " + file);
+        File checksum = new File(file.getAbsoluteFile().getParentFile(), '.' + file.getName() + ".crc");
+        if (!checksum.delete() && checksum.exists())
+            logger.warn("Cannot delete " + checksum);
+    }
+
+    private void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        if (!file.delete() && file.exists())
+            logger.warn("Cannot delete " + file);
+    }
+
+    public File getTarget() {
+        return target;
+    }
+
+    public int getRegionsCount() {
+        return startKeys.length;
+    }
+
+    public int getRegionsDone() {
+        return regionsDone.get();
+    }
+
+    @Override
+    public double getProgress() {
+        return startKeys.length == 0 ? 1 : (double) regionsDone.get() / startKeys.length;
+    }
+}
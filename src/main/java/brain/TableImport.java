@@ -0,0 +1,382 @@
+package brain;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.HTable;
+import org.apache.hadoop.hbase.client.HTableInterface;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.io.hfile.CacheConfig;
+import org.apache.hadoop.hbase.io.hfile.HFile;
+import org.apache.hadoop.hbase.mapreduce.LoadIncrementalHFiles;
+import org.apache.hadoop.hbase.regionserver.StoreFile;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Потоковый импорт файлов экспорта в таблицу. Читатель переводит записи в ячейки, собирает подряд идущие ячейки
+ * одной строки в Put, а Put'ы - в пачки не больше буфера записи и отдаёт их через ограниченную очередь нескольким
+ * писателям. У каждого писателя своя таблица с выключенным autoFlush, поэтому клиент держит в памяти лишь
+ * несколько буферов записи и упирается в скорость кластера, а не в один поток. Скорость можно ограничить
+ * числом строк в секунду.
+ * <p/>
+ * В режиме bulk load ячейки вместо Put'ов пишутся в HFile'ы по семействам во временный каталог файловой системы
+ * кластера и загружаются в таблицу {@link LoadIncrementalHFiles}. Для этого записи должны идти в порядке ключей,
+ * как их пишет экспорт этой программы.
+ */
+public class TableImport extends BulkOperation {
+    private static final long POLL_INTERVAL_MS = 200L;
+    private static final String PART_PREFIX = "part-";
+    // признак конца работы для писателя, сравнивается по ссылке
+    private static final Batch END_OF_INPUT = new Batch();
+    private final ConnectionManager connectionManager;
+    private final Configuration configuration;
+    private final String tableName;
+    private final File[] files;
+    private final ExportFormat format;
+    private final CellText text;
+    private final int writers;
+    private final long writeBufferSize;
+    private final int maxRowsPerSecond;
+    private final Path bulkLoadDir;
+    private final long totalBytes;
+    private volatile long doneBytes;
+    private volatile IOException writeFailure;
+    private final AtomicInteger liveWriters = new AtomicInteger();
+
+    /**
+     * @param source           файл или каталог с частями {@code part-*} параллельного экспорта
+     * @param writers          число потоков записи
+     * @param writeBufferSize  размер буфера записи одного писателя и наибольший размер пачки Put'ов
+     * @param maxRowsPerSecond ограничение скорости, 0 - без ограничения
+     * @param bulkLoadDir      временный каталог для HFile'ов на файловой системе кластера, null - писать Put'ами
+     */
+    TableImport(ConnectionManager connectionManager, Configuration configuration, String tableName, File source,
+                ExportFormat format, CellText text, int writers, long writeBufferSize, int maxRowsPerSecond,
+                Path bulkLoadDir) {
+        super("table-import-" + tableName);
+        this.connectionManager = connectionManager;
+        this.configuration = configuration;
+        this.tableName = tableName;
+        this.files = listFiles(source);
+        this.format = format;
+        this.text = text;
+        this.writers = writers;
+        this.writeBufferSize = writeBufferSize;
+        this.maxRowsPerSecond = maxRowsPerSecond;
+        this.bulkLoadDir = bulkLoadDir;
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        this.totalBytes = total;
+    }
+
+    private static File[] listFiles(File source) {
+        if (!source.isDirectory())
+            return new File[]{source};
+        List<File> parts = new ArrayList<>();
+        File[] children = source.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                if (child.isFile() && child.getName().startsWith(PART_PREFIX))
+                    parts.add(child);
+            }
+        }
+        File[] sorted = parts.toArray(new File[parts.size()]);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    @Override
+    protected void execute() throws Exception {
+        if (bulkLoadDir != null)
+            writeHFiles();
+        else
+            writePuts();
+    }
+
+    private void writePuts() throws Exception {
+        BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(writers);
+        List<Thread> threads = new ArrayList<>(writers);
+        liveWriters.set(writers);
+        for (int i = 0; i < writers; i++) {
+            Thread thread = new Thread(new Writer(queue), getName() + "-writer-" + (i + 1));
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+        try {
+            readPuts(queue);
+        } finally {
+            for (int i = 0; i < writers; i++) {
+                // писатели, упавшие раньше, очередь уже не разбирают
+                offer(queue, END_OF_INPUT);
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+        if (writeFailure != null)
+            throw writeFailure;
+    }
+
+    private void readPuts(BlockingQueue<Batch> queue) throws IOException, InterruptedException {
+        long emittedRows = 0;
+        Batch batch = new Batch();
+        Put put = null;
+        boolean putStartsRow = false;
+        for (File file : files) {
+            long before = getDoneBytes(file);
+            ExportReader reader = format.openReader(file, text, configuration);
+            try {
+                KeyValue cell;
+                while (!isCancelled() && (cell = reader.read()) != null) {
+                    boolean newRow = put == null || !Bytes.equals(put.getRow(), cell.getRow());
+                    // слишком широкая строка уходит несколькими Put'ами
+                    if (newRow || put.heapSize() >= writeBufferSize) {
+                        if (put != null)
+                            batch.add(put, putStartsRow);
+                        if (batch.heapSize >= writeBufferSize) {
+                            if (!offer(queue, batch))
+                                return;
+                            batch = new Batch();
+                            doneBytes = before + reader.getPosition();
+                        }
+                        put = new Put(cell.getRow());
+                        putStartsRow = newRow;
+                        if (newRow)
+                            throttle(++emittedRows);
+                    }
+                    put.add(cell);
+                }
+                doneBytes = before + reader.getPosition();
+            } finally {
+                reader.close();
+            }
+        }
+        if (put != null)
+            batch.add(put, putStartsRow);
+        if (!batch.puts.isEmpty())
+            offer(queue, batch);
+    }
+
+    /**
+     * Придерживает чтение, если строки идут быстрее ограничения
+     */
+    private void throttle(long emittedRows) throws InterruptedException {
+        if (maxRowsPerSecond <= 0)
+            return;
+        long ahead = emittedRows * 1000 / maxRowsPerSecond - getElapsedMillis();
+        if (ahead > 0)
+            Thread.sleep(ahead);
+    }
+
+    /**
+     * Кладёт пачку в очередь, ожидая места, пока импорт не остановлен и писатели живы
+     *
+     * @return false, если пачка не нужна
+     */
+    private boolean offer(BlockingQueue<Batch> queue, Batch batch) throws IOException, InterruptedException {
+        while (liveWriters.get() > 0 && (batch == END_OF_INPUT || (!isCancelled() && writeFailure == null))) {
+            if (queue.offer(batch, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS))
+                return true;
+            if (batch == END_OF_INPUT && (isCancelled() || writeFailure != null))
+                queue.clear();
+        }
+        // о конце работы сообщать уже некому, ошибку писателей покажет execute
+        if (batch == END_OF_INPUT)
+            return false;
+        if (writeFailure != null)
+            throw writeFailure;
+        if (liveWriters.get() == 0 && !isCancelled())
+            throw new IOException("All writers of " + tableName + " stopped");
+        return false;
+    }
+
+    /**
+     * @return размер файлов, прочитанных до указанного
+     */
+    private long getDoneBytes(File current) {
+        long done = 0;
+        for (File file : files) {
+            if (file == current)
+                break;
+            done += file.length();
+        }
+        return done;
+    }
+
+    private void writeHFiles() throws Exception {
+        HTableDescriptor descriptor = connectionManager.getAdmin().getTableDescriptor(Bytes.toBytes(tableName));
+        FileSystem fileSystem = FileSystem.get(configuration);
+        if (!fileSystem.mkdirs(bulkLoadDir))
+            throw new IOException("Cannot create " + bulkLoadDir);
+        Map<byte[], HFile.Writer> hFiles = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+        byte[] now = Bytes.toBytes(System.currentTimeMillis());
+        try {
+            KeyValue previous = null;
+            for (File file : files) {
+                ExportReader reader = format.openReader(file, text, configuration);
+                try {
+                    KeyValue cell;
+                    while (!isCancelled() && (cell = reader.read()) != null) {
+                        cell.updateLatestStamp(now);
+                        if (previous != null && KeyValue.COMPARATOR.compare(previous, cell) > 0)
+                            throw new IOException("Bulk load needs cells sorted by key, " + cell + " follows " + previous);
+                        byte[] family = cell.getFamily();
+                        HFile.Writer hFile = hFiles.get(family);
+                        if (hFile == null) {
+                            hFile = createHFile(fileSystem, descriptor, family);
+                            hFiles.put(family, hFile);
+                        }
+                        hFile.append(cell);
+                        if (previous == null || !Bytes.equals(previous.getRow(), cell.getRow()))
+                            rows.incrementAndGet();
+                        cells.incrementAndGet();
+                        bytes.addAndGet(cell.getLength());
+                        previous = cell;
+                    }
+                    doneBytes = getDoneBytes(file) + reader.getPosition();
+                } finally {
+                    reader.close();
+                }
+            }
+        } finally {
+            for (HFile.Writer hFile : hFiles.values()) {
+                hFile.appendFileInfo(StoreFile.BULKLOAD_TIME_KEY, Bytes.toBytes(System.currentTimeMillis()));
+                hFile.appendFileInfo(StoreFile.MAJOR_COMPACTION_KEY, Bytes.toBytes(false));
+                hFile.close();
+            }
+        }
+        if (isCancelled())
+            return;
+        HTable table = connectionManager.getHTable(tableName);
+        try {
+            new LoadIncrementalHFiles(configuration).doBulkLoad(bulkLoadDir, table);
+        } finally {
+            table.close();
+        }
+        fileSystem.delete(bulkLoadDir, true);
+    }
+
+    /**
+     * Создаёт HFile семейства с размером блока и сжатием, заданными в описании семейства
+     */
+    private HFile.Writer createHFile(FileSystem fileSystem, HTableDescriptor descriptor, byte[] family)
+            throws IOException {
+        HColumnDescriptor familyDescriptor = descriptor.getFamily(family);
+        if (familyDescriptor == null)
+            throw new IOException("Table " + tableName + " has no family " + Bytes.toStringBinary(family));
+        Path familyDir = new Path(bulkLoadDir, Bytes.toString(family));
+        fileSystem.mkdirs(familyDir);
+        return HFile.getWriterFactory(configuration, new CacheConfig(configuration))
+                .withPath(fileSystem, new Path(familyDir, "hfile"))
+                .withBlockSize(familyDescriptor.getBlocksize())
+                .withCompression(familyDescriptor.getCompression())
+                .withComparator(KeyValue.KEY_COMPARATOR)
+                .create();
+    }
+
+    @Override
+    protected void discard() {
+        if (bulkLoadDir == null)
+            return;
+        try {
+            FileSystem.get(configuration).delete(bulkLoadDir, true);
+        } catch (IOException e) {
+            logger.warn("Cannot delete " + bulkLoadDir, e);
+        }
+    }
+
+    /**
+     * @return доля прочитанных байт входных файлов
+     */
+    @Override
+    public double getProgress() {
+        return totalBytes == 0 ? 1 : Math.min(1, (double) doneBytes / totalBytes);
+    }
+
+    /**
+     * Put'ы, которые писатель отправляет одним вызовом put
+     */
+    private static class Batch {
+        private final List<Put> puts = new ArrayList<>();
+        private long heapSize;
+        private long cells;
+        private int rows;
+
+        private void add(Put put, boolean startsRow) {
+            puts.add(put);
+            if (startsRow)
+                rows++;
+            heapSize += put.heapSize();
+            cells += put.size();
+        }
+    }
+
+    /**
+     * Писатель со своей таблицей вне пула: пачки копятся в буфере записи клиента и уходят на регион-серверы
+     * при его заполнении
+     */
+    private class Writer implements Runnable {
+        private final BlockingQueue<Batch> queue;
+
+        private Writer(BlockingQueue<Batch> queue) {
+            this.queue = queue;
+        }
+
+        @Override
+        public void run() {
+            try {
+                HTableInterface table = connectionManager.getWriteTable(tableName, writeBufferSize);
+                boolean written = false;
+                try {
+                    Batch batch;
+                    while ((batch = queue.take()) != END_OF_INPUT) {
+                        if (isCancelled())
+                            continue;
+                        table.put(batch.puts);
+                        rows.addAndGet(batch.rows);
+                        cells.addAndGet(batch.cells);
+                        bytes.addAndGet(batch.heapSize);
+                    }
+                    if (!isCancelled()) {
+                        table.flushCommits();
+                        written = true;
+                    }
+                } finally {
+                    // при отмене или ошибке принятые, но не отправленные Put'ы не пишутся при закрытии
+                    if (!written)
+                        ConnectionManager.discardWriteBuffer(table);
+                    table.close();
+                }
+            } catch (IOException e) {
+                logger.error(e);
+                writeFailure = e;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable e) {
+                // например слишком большой или пустой Put, или ошибка создания таблицы
+                logger.error(e);
+                writeFailure = new IOException(e);
+            } finally {
+                liveWriters.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package brain;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.prefs.Preferences;
+
+/**
+ * Список таблиц прошлого сеанса в preference. Показывается сразу при запуске, пока кластер ещё не ответил,
+ * и заменяется настоящим списком. Сбрасывается при смене настроек подключения.
+ */
+public final class TableNamesCache {
+    private static final String NODE = "startup";
+    private static final String TABLE_NAMES_KEY = "tableNames";
+    // имена таблиц не содержат перевода строки
+    private static final char SEPARATOR = '\n';
+
+    private TableNamesCache() {
+    }
+
+    private static Preferences node() {
+        return Preferences.userNodeForPackage(TableNamesCache.class).node(NODE);
+    }
+
+    /**
+     * @return имена таблиц прошлого сеанса или null, если их нет
+     */
+    public static String[] read() {
+        String joined = node().get(TABLE_NAMES_KEY, null);
+        if (joined == null || joined.isEmpty())
+            return null;
+        List<String> names = new ArrayList<>();
+        int start = 0;
+        for (int end = joined.indexOf(SEPARATOR); end >= 0; end = joined.indexOf(SEPARATOR, start)) {
+            names.add(joined.substring(start, end));
+            start = end + 1;
+        }
+        names.add(joined.substring(start));
+        return names.toArray(new String[names.size()]);
+    }
+
+    /**
+     * Запоминает список таблиц; если он длиннее допустимого значения preference, запоминается его начало
+     */
+    static void write(String[] names) {
+        StringBuilder joined = new StringBuilder();
+        for (String name : names) {
+            if (joined.length() + name.length() + 1 > Preferences.MAX_VALUE_LENGTH)
+                break;
+            if (joined.length() > 0)
+                joined.append(SEPARATOR);
+            joined.append(name);
+        }
+        node().put(TABLE_NAMES_KEY, joined.toString());
+    }
+
+    static void clear() {
+        node().remove(TABLE_NAMES_KEY);
+    }
+}
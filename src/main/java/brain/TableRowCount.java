@@ -0,0 +1,134 @@
+package brain;
+
+import org.apache.hadoop.hbase.client.HTableInterface;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.FirstKeyOnlyFilter;
+import org.apache.hadoop.hbase.filter.KeyOnlyFilter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Точный подсчёт строк таблицы параллельными сканами по регионам. Сервер отдаёт только первую ячейку
+ * каждой строки и без значения, а клиент лишь считает пришедшие строки, ничего не сохраняя.
+ * Результат попадает в кэш статистики таблиц.
+ */
+public class TableRowCount extends BulkOperation {
+    private static final int CACHING = 5000;
+    private final ConnectionManager connectionManager;
+    private final TableStatistics statistics;
+    private final WeightedCache<String, TableStatistics> cache;
+    private final int threads;
+    private final long[] regionRows;
+    private final AtomicInteger regionsDone = new AtomicInteger();
+    private volatile TableStatistics counted;
+
+    /**
+     * @param statistics сведения о таблице, чьи регионы считаются
+     * @param cache      кэш, в который кладутся сведения с точным числом строк
+     * @param threads    сколько регионов считать одновременно
+     */
+    TableRowCount(ConnectionManager connectionManager, TableStatistics statistics,
+                  WeightedCache<String, TableStatistics> cache, int threads) {
+        super("table-row-count-" + statistics.getTableName());
+        this.connectionManager = connectionManager;
+        this.statistics = statistics;
+        this.cache = cache;
+        this.threads = threads;
+        this.regionRows = new long[statistics.getRegions().size()];
+    }
+
+    @Override
+    protected void execute() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger number = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, getName() + '-' + number.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>(regionRows.length);
+            for (int i = 0; i < regionRows.length; i++) {
+                final int region = i;
+                futures.add(pool.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        regionRows[region] = countRegion(statistics.getRegions().get(region));
+                        regionsDone.incrementAndGet();
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        } finally {
+            pool.shutdownNow();
+        }
+        if (isCancelled())
+            return;
+        counted = statistics.withExactRows(regionRows);
+        cache.put(statistics.getTableName(), counted);
+    }
+
+    /**
+     * Считает строки региона, проверяя отмену на каждой строке. Регион, до которого очередь дошла
+     * уже после отмены, не открывает сканер.
+     */
+    private long countRegion(RegionStatistics region) throws IOException {
+        if (isCancelled())
+            return 0;
+        Scan scan = new Scan(region.getStartKey(), region.getEndKey());
+        scan.setCaching(CACHING);
+        scan.setCacheBlocks(false);
+        scan.setMaxVersions(1);
+        scan.setFilter(new FilterList(new FirstKeyOnlyFilter(), new KeyOnlyFilter()));
+        long count = 0;
+        HTableInterface table = connectionManager.getTable(statistics.getTableName());
+        try {
+            ResultScanner scanner = table.getScanner(scan);
+            try {
+                Result result;
+                while (!isCancelled() && (result = scanner.next()) != null) {
+                    count++;
+                    rows.incrementAndGet();
+                    cells.incrementAndGet();
+                    bytes.addAndGet(result.getRow().length);
+                }
+            } finally {
+                scanner.close();
+            }
+        } finally {
+            table.close();
+        }
+        return count;
+    }
+
+    @Override
+    protected void discard() {
+    }
+
+    /**
+     * @return сведения о таблице с точным числом строк или null, если подсчёт не закончен
+     */
+    public TableStatistics getStatistics() {
+        return counted;
+    }
+
+    @Override
+    public double getProgress() {
+        return regionRows.length == 0 ? 1 : (double) regionsDone.get() / regionRows.length;
+    }
+}
@@ -0,0 +1,114 @@
+package brain;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Размер таблицы без полного чтения ключей: регионы с их нагрузкой из статуса кластера и оценка числа строк
+ * по несжатому размеру регионов и среднему размеру строки в выборке. Точное число строк появляется
+ * после подсчёта {@link TableRowCount}.
+ */
+public final class TableStatistics {
+    private final String tableName;
+    private final List<RegionStatistics> regions;
+    private final long sampledRows;
+    private final long averageRowBytes;
+    private final long collectedAt;
+
+    /**
+     * @param sampledRows     сколько строк прочитано для оценки среднего размера
+     * @param averageRowBytes средний размер строки в выборке, 0 - таблица пуста
+     */
+    public TableStatistics(String tableName, List<RegionStatistics> regions, long sampledRows, long averageRowBytes,
+                           long collectedAt) {
+        this.tableName = tableName;
+        this.regions = Collections.unmodifiableList(new ArrayList<>(regions));
+        this.sampledRows = sampledRows;
+        this.averageRowBytes = averageRowBytes;
+        this.collectedAt = collectedAt;
+    }
+
+    /**
+     * @param exactRows точное число строк по регионам в порядке {@link #getRegions()}
+     * @return те же сведения с точным числом строк
+     */
+    public TableStatistics withExactRows(long[] exactRows) {
+        List<RegionStatistics> counted = new ArrayList<>(regions.size());
+        for (int i = 0; i < regions.size(); i++) {
+            counted.add(regions.get(i).withExactRows(exactRows[i]));
+        }
+        return new TableStatistics(tableName, counted, sampledRows, averageRowBytes, collectedAt);
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * @return регионы в порядке ключей
+     */
+    public List<RegionStatistics> getRegions() {
+        return regions;
+    }
+
+    public long getSampledRows() {
+        return sampledRows;
+    }
+
+    public long getAverageRowBytes() {
+        return averageRowBytes;
+    }
+
+    /**
+     * @return время сбора сведений в миллисекундах
+     */
+    public long getCollectedAt() {
+        return collectedAt;
+    }
+
+    public long getEstimatedRows() {
+        long rows = 0;
+        for (RegionStatistics region : regions) {
+            rows += region.getEstimatedRows();
+        }
+        return rows;
+    }
+
+    /**
+     * @return точное число строк, -1 - хотя бы один регион не посчитан
+     */
+    public long getExactRows() {
+        long rows = 0;
+        for (RegionStatistics region : regions) {
+            if (region.getExactRows() < 0)
+                return -1;
+            rows += region.getExactRows();
+        }
+        return rows;
+    }
+
+    public long getStorefileSizeMB() {
+        long size = 0;
+        for (RegionStatistics region : regions) {
+            size += region.getStorefileSizeMB();
+        }
+        return size;
+    }
+
+    public long getMemStoreSizeMB() {
+        long size = 0;
+        for (RegionStatistics region : regions) {
+            size += region.getMemStoreSizeMB();
+        }
+        return size;
+    }
+
+    public int getStorefiles() {
+        int files = 0;
+        for (RegionStatistics region : regions) {
+            files += region.getStorefiles();
+        }
+        return files;
+    }
+}
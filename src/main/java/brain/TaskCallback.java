@@ -0,0 +1,10 @@
+package brain;
+
+/**
+ * Получатель результата фоновой задачи {@link TaskExecutor}, оба метода вызываются в потоке обработки событий Swing
+ */
+public interface TaskCallback<T> {
+    void succeeded(T result);
+
+    void failed(Throwable cause);
+}
@@ -0,0 +1,163 @@
+package brain;
+
+import javax.swing.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Общий пул фоновых задач приложения. Число потоков ограничено, задачи ждут в очереди с приоритетом:
+ * интерактивные чтения, которых ждёт пользователь, выполняются раньше фоновых и массовых,
+ * внутри одного приоритета - в порядке постановки. Результат задачи передаётся в {@link TaskCallback}
+ * в потоке обработки событий Swing, если задачу к этому времени не отменили.
+ */
+public class TaskExecutor {
+    private final AtomicLong sequence = new AtomicLong();
+    private final ThreadPoolExecutor pool;
+
+    /**
+     * @param name    префикс имён потоков
+     * @param threads максимальное количество потоков
+     */
+    public TaskExecutor(final String name, int threads) {
+        pool = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger number = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name + '-' + number.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        pool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Ставит задачу в очередь
+     *
+     * @param callback получатель результата в потоке обработки событий Swing или null
+     * @return задача, которую можно отменить; отменённая задача не вызывает callback
+     */
+    public <T> Future<T> submit(Priority priority, Callable<T> task, TaskCallback<T> callback) {
+        Task<T> future = new Task<>(priority, sequence.getAndIncrement(), task, callback);
+        pool.execute(future);
+        return future;
+    }
+
+    /**
+     * Ставит в очередь задачу без результата
+     */
+    public Future<?> execute(Priority priority, Runnable task) {
+        return submit(priority, Executors.callable(task), null);
+    }
+
+    /**
+     * @return ячейка для задач, которые устаревают при смене выделения в UI
+     */
+    public Slot newSlot() {
+        return new Slot();
+    }
+
+    /**
+     * @return количество задач, ждущих в очереди
+     */
+    public int getQueuedCount() {
+        return pool.getQueue().size();
+    }
+
+    public int getActiveCount() {
+        return pool.getActiveCount();
+    }
+
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    public enum Priority {
+        /**
+         * Чтения, результата которых пользователь ждёт прямо сейчас
+         */
+        INTERACTIVE,
+        /**
+         * Обычные фоновые запросы
+         */
+        NORMAL,
+        /**
+         * Подготовка экспорта и импорта и сбор статистики таблиц: тяжёлые запросы, которые уступают очередь
+         * остальным. Сами массовые операции идут в собственных потоках {@link BulkOperation}.
+         */
+        BULK
+    }
+
+    /**
+     * Хранит одну актуальную задачу: новая задача отменяет предыдущую, поэтому при быстрой смене
+     * выделения в UI показывается только результат последней
+     */
+    public class Slot {
+        private Future<?> current;
+
+        public synchronized <T> Future<T> submit(Priority priority, Callable<T> task, TaskCallback<T> callback) {
+            cancel();
+            Future<T> future = TaskExecutor.this.submit(priority, task, callback);
+            current = future;
+            return future;
+        }
+
+        public synchronized void cancel() {
+            if (current != null)
+                current.cancel(false);
+            current = null;
+        }
+    }
+
+    private static class Task<T> extends FutureTask<T> implements Comparable<Task<?>> {
+        private final Priority priority;
+        private final long sequence;
+        private final TaskCallback<T> callback;
+
+        private Task(Priority priority, long sequence, Callable<T> callable, TaskCallback<T> callback) {
+            super(callable);
+            this.priority = priority;
+            this.sequence = sequence;
+            this.callback = callback;
+        }
+
+        @Override
+        public int compareTo(Task<?> other) {
+            int byPriority = priority.compareTo(other.priority);
+            if (byPriority != 0)
+                return byPriority;
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+
+        @Override
+        protected void done() {
+            if (callback == null || isCancelled())
+                return;
+            T result = null;
+            Throwable failure = null;
+            try {
+                result = get();
+            } catch (ExecutionException e) {
+                failure = e.getCause();
+            } catch (InterruptedException | CancellationException e) {
+                return;
+            }
+            final T taskResult = result;
+            final Throwable taskFailure = failure;
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    if (isCancelled())
+                        return;
+                    if (taskFailure == null)
+                        callback.succeeded(taskResult);
+                    else
+                        callback.failed(taskFailure);
+                }
+            });
+        }
+    }
+}
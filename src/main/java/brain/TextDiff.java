@@ -0,0 +1,70 @@
+package brain;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Построчное сравнение двух декодированных значений по наибольшей общей подпоследовательности строк.
+ * Однострочные значения, например JSON записи Avro, перед сравнением делятся после запятых.
+ */
+public final class TextDiff {
+    public static final char SAME = ' ';
+    public static final char REMOVED = '-';
+    public static final char ADDED = '+';
+    // таблица подпоследовательностей занимает lines * lines ячеек
+    private static final int MAX_LINES = 2000;
+
+    private TextDiff() {
+    }
+
+    /**
+     * @return строки сравнения, каждая начинается с {@link #SAME}, {@link #REMOVED} или {@link #ADDED}
+     */
+    public static List<String> diff(String oldText, String newText) {
+        List<String> a = split(oldText);
+        List<String> b = split(newText);
+        List<String> result = new ArrayList<>(a.size() + b.size());
+        if (a.size() > MAX_LINES || b.size() > MAX_LINES) {
+            // слишком длинные значения показываются целиком, одно за другим
+            addAll(result, REMOVED, a);
+            addAll(result, ADDED, b);
+            return result;
+        }
+        int[][] common = new int[a.size() + 1][b.size() + 1];
+        for (int i = a.size() - 1; i >= 0; i--) {
+            for (int j = b.size() - 1; j >= 0; j--) {
+                common[i][j] = a.get(i).equals(b.get(j))
+                        ? common[i + 1][j + 1] + 1 : Math.max(common[i + 1][j], common[i][j + 1]);
+            }
+        }
+        int i = 0;
+        int j = 0;
+        while (i < a.size() && j < b.size()) {
+            if (a.get(i).equals(b.get(j))) {
+                result.add(SAME + a.get(i));
+                i++;
+                j++;
+            } else if (common[i + 1][j] >= common[i][j + 1]) {
+                result.add(REMOVED + a.get(i++));
+            } else {
+                result.add(ADDED + b.get(j++));
+            }
+        }
+        addAll(result, REMOVED, a.subList(i, a.size()));
+        addAll(result, ADDED, b.subList(j, b.size()));
+        return result;
+    }
+
+    private static List<String> split(String text) {
+        if (text.indexOf('\n') >= 0)
+            return Arrays.asList(text.split("\r?\n", -1));
+        return Arrays.asList(text.split("(?<=,)"));
+    }
+
+    private static void addAll(List<String> result, char mark, List<String> lines) {
+        for (String line : lines) {
+            result.add(mark + line);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package brain;
+
+/**
+ * Способ показать значение ячейки. Кодеки создаются по текстовому описанию через {@link ValueCodecs#forSpec(String)}
+ * и назначаются таблице, семейству или столбцу в {@link ValueCodecRegistry}.
+ */
+public interface ValueCodec {
+    /**
+     * @return короткое имя кодека для показа пользователю
+     */
+    String getName();
+
+    /**
+     * @return описание, по которому кодек восстанавливается из настроек
+     */
+    String getSpec();
+
+    /**
+     * @param value байты значения ячейки
+     * @return строковое представление значения
+     * @throws Exception если значение не подходит кодеку
+     */
+    String decode(byte[] value) throws Exception;
+
+    /**
+     * Обратное к {@link #decode(byte[])} преобразование, нужно для импорта
+     *
+     * @param text строковое представление значения
+     * @return байты значения ячейки
+     * @throws Exception если текст не подходит кодеку или кодек не умеет записывать значения
+     */
+    byte[] encode(String text) throws Exception;
+}
@@ -0,0 +1,131 @@
+package brain;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.MD5Hash;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.prefs.BackingStoreException;
+import java.util.prefs.Preferences;
+
+/**
+ * Кодеки значений, назначенные таблицам, семействам и столбцам. Область назначения записывается как
+ * {@code таблица}, {@code таблица:семейство} или {@code таблица:семейство:столбец};
+ * для ячейки выбирается кодек самой узкой области. Назначения хранятся в узле preference: короткие - ключом
+ * области, а описания длиннее {@link Preferences#MAX_VALUE_LENGTH} (схемы Avro) и слишком длинные области -
+ * в дочернем узле по частям.
+ */
+public class ValueCodecRegistry {
+    private static final char SEPARATOR = ':';
+    private static final String LONG_NODE = "long";
+    private static final String SCOPE_KEY = "scope";
+    private static final String PART_KEY_PREFIX = "spec.";
+    private final Logger logger = Logger.getLogger(ValueCodecRegistry.class);
+    private final Preferences preferences;
+    private final Map<String, ValueCodec> codecs = new HashMap<>();
+
+    public ValueCodecRegistry(Preferences preferences) {
+        this.preferences = preferences;
+        try {
+            for (String scope : preferences.keys()) {
+                load(scope, preferences.get(scope, ""));
+            }
+            Preferences longNode = preferences.node(LONG_NODE);
+            for (String name : longNode.childrenNames()) {
+                Preferences entry = longNode.node(name);
+                StringBuilder spec = new StringBuilder();
+                for (int part = 0; ; part++) {
+                    String text = entry.get(PART_KEY_PREFIX + part, null);
+                    if (text == null)
+                        break;
+                    spec.append(text);
+                }
+                load(entry.get(SCOPE_KEY, name), spec.toString());
+            }
+        } catch (BackingStoreException e) {
+            logger.error(e);
+        }
+    }
+
+    private void load(String scope, String spec) {
+        try {
+            codecs.put(scope, ValueCodecs.forSpec(spec));
+        } catch (Exception e) {
+            logger.error("Skipping codec for " + scope, e);
+        }
+    }
+
+    /**
+     * @param family    семейство или null для всей таблицы
+     * @param qualifier столбец или null для всего семейства
+     * @return область назначения
+     */
+    public static String scope(String tableName, String family, String qualifier) {
+        if (family == null)
+            return tableName;
+        if (qualifier == null)
+            return tableName + SEPARATOR + family;
+        return tableName + SEPARATOR + family + SEPARATOR + qualifier;
+    }
+
+    /**
+     * @return кодек для ячейки или null, если значение показывается в выбранной кодировке
+     */
+    public synchronized ValueCodec resolve(String tableName, String family, String qualifier) {
+        ValueCodec codec = codecs.get(scope(tableName, family, qualifier));
+        if (codec == null)
+            codec = codecs.get(scope(tableName, family, null));
+        if (codec == null)
+            codec = codecs.get(tableName);
+        return codec;
+    }
+
+    /**
+     * @return кодек, назначенный именно этой области, или null
+     */
+    public synchronized ValueCodec get(String scope) {
+        return codecs.get(scope);
+    }
+
+    /**
+     * Назначает области кодек и сохраняет назначение
+     *
+     * @param spec описание кодека, null или пустая строка снимают назначение
+     * @throws Exception если описание кодека некорректно или назначение не удалось сохранить
+     */
+    public synchronized void set(String scope, String spec) throws Exception {
+        ValueCodec codec = spec == null || spec.isEmpty() ? null : ValueCodecs.forSpec(spec);
+        try {
+            preferences.remove(scope);
+            Preferences longNode = preferences.node(LONG_NODE);
+            String longName = MD5Hash.getMD5AsHex(Bytes.toBytes(scope));
+            if (longNode.nodeExists(longName))
+                longNode.node(longName).removeNode();
+            if (codec != null) {
+                if (scope.length() <= Preferences.MAX_KEY_LENGTH && spec.length() <= Preferences.MAX_VALUE_LENGTH) {
+                    preferences.put(scope, spec);
+                } else {
+                    Preferences entry = longNode.node(longName);
+                    entry.put(SCOPE_KEY, scope);
+                    for (int part = 0, from = 0; from < spec.length(); part++) {
+                        int to = Math.min(spec.length(), from + Preferences.MAX_VALUE_LENGTH);
+                        // суррогатную пару не разрываем
+                        if (to < spec.length() && Character.isHighSurrogate(spec.charAt(to - 1)))
+                            to--;
+                        entry.put(PART_KEY_PREFIX + part, spec.substring(from, to));
+                        from = to;
+                    }
+                }
+            }
+            preferences.flush();
+        } catch (BackingStoreException | IllegalArgumentException e) {
+            throw new IOException("Cannot save codec for " + scope, e);
+        }
+        if (codec == null)
+            codecs.remove(scope);
+        else
+            codecs.put(scope, codec);
+    }
+}
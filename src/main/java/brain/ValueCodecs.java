@@ -0,0 +1,243 @@
+package brain;
+
+import com.google.protobuf.UnknownFieldSet;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Встроенные кодеки значений. Описание кодека - его имя, для Avro - {@code avro:} и схема записи в JSON.
+ * Числовые кодеки читают значения в формате {@link Bytes}: big-endian фиксированной ширины.
+ */
+public final class ValueCodecs {
+    public static final String LONG = "long";
+    public static final String INT = "int";
+    public static final String SHORT = "short";
+    public static final String DOUBLE = "double";
+    public static final String FLOAT = "float";
+    public static final String PROTOBUF = "protobuf";
+    public static final String AVRO = "avro";
+    private static final String AVRO_PREFIX = AVRO + ':';
+    /**
+     * Имена кодеков, не требующих дополнительных параметров
+     */
+    public static final List<String> SIMPLE_NAMES = Collections.unmodifiableList(Arrays.asList(
+            Constants.HEX, Constants.UTF8, Constants.AHCII, Constants.CP1251,
+            LONG, INT, SHORT, DOUBLE, FLOAT, PROTOBUF));
+
+    private ValueCodecs() {
+    }
+
+    /**
+     * @param spec описание кодека
+     * @return кодек
+     * @throws Exception если описание неизвестно или схема Avro некорректна
+     */
+    public static ValueCodec forSpec(String spec) throws Exception {
+        if (spec.startsWith(AVRO_PREFIX))
+            return new AvroCodec(spec.substring(AVRO_PREFIX.length()));
+        switch (spec) {
+            case LONG:
+                return new NumberCodec(LONG, Bytes.SIZEOF_LONG);
+            case INT:
+                return new NumberCodec(INT, Bytes.SIZEOF_INT);
+            case SHORT:
+                return new NumberCodec(SHORT, Bytes.SIZEOF_SHORT);
+            case DOUBLE:
+                return new NumberCodec(DOUBLE, Bytes.SIZEOF_DOUBLE);
+            case FLOAT:
+                return new NumberCodec(FLOAT, Bytes.SIZEOF_FLOAT);
+            case PROTOBUF:
+                return new ProtobufCodec();
+            default:
+                if (BytesToStringConverter.toBytes("", spec) == null)
+                    throw new IllegalArgumentException("Unknown codec " + spec);
+                return new EncodingCodec(spec);
+        }
+    }
+
+    /**
+     * @return описание кодека Avro со схемой
+     */
+    public static String avroSpec(String schema) {
+        return AVRO_PREFIX + schema;
+    }
+
+    /**
+     * @return схема Avro из описания кодека или null, если это не кодек Avro
+     */
+    public static String avroSchema(String spec) {
+        return spec != null && spec.startsWith(AVRO_PREFIX) ? spec.substring(AVRO_PREFIX.length()) : null;
+    }
+
+    /**
+     * Значение как текст в одной из кодировок, которые предлагает главное окно
+     */
+    private static class EncodingCodec implements ValueCodec {
+        private final String encoding;
+
+        private EncodingCodec(String encoding) {
+            this.encoding = encoding;
+        }
+
+        @Override
+        public String getName() {
+            return encoding;
+        }
+
+        @Override
+        public String getSpec() {
+            return encoding;
+        }
+
+        @Override
+        public String decode(byte[] value) throws Exception {
+            return BytesToStringConverter.toString(value, encoding);
+        }
+
+        @Override
+        public byte[] encode(String text) throws Exception {
+            return BytesToStringConverter.toBytes(text, encoding);
+        }
+    }
+
+    private static class NumberCodec implements ValueCodec {
+        private final String name;
+        private final int width;
+
+        private NumberCodec(String name, int width) {
+            this.name = name;
+            this.width = width;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getSpec() {
+            return name;
+        }
+
+        @Override
+        public String decode(byte[] value) throws Exception {
+            if (value.length != width)
+                throw new IllegalArgumentException(name + " needs " + width + " bytes, got " + value.length);
+            switch (name) {
+                case LONG:
+                    return Long.toString(Bytes.toLong(value));
+                case INT:
+                    return Integer.toString(Bytes.toInt(value));
+                case SHORT:
+                    return Short.toString(Bytes.toShort(value));
+                case DOUBLE:
+                    return Double.toString(Bytes.toDouble(value));
+                default:
+                    return Float.toString(Bytes.toFloat(value));
+            }
+        }
+
+        @Override
+        public byte[] encode(String text) throws Exception {
+            String trimmed = text.trim();
+            switch (name) {
+                case LONG:
+                    return Bytes.toBytes(Long.parseLong(trimmed));
+                case INT:
+                    return Bytes.toBytes(Integer.parseInt(trimmed));
+                case SHORT:
+                    return Bytes.toBytes(Short.parseShort(trimmed));
+                case DOUBLE:
+                    return Bytes.toBytes(Double.parseDouble(trimmed));
+                default:
+                    return Bytes.toBytes(Float.parseFloat(trimmed));
+            }
+        }
+    }
+
+    /**
+     * Сообщение protobuf без схемы: номера полей и их значения в текстовом формате
+     */
+    private static class ProtobufCodec implements ValueCodec {
+        @Override
+        public String getName() {
+            return PROTOBUF;
+        }
+
+        @Override
+        public String getSpec() {
+            return PROTOBUF;
+        }
+
+        @Override
+        public String decode(byte[] value) throws Exception {
+            return UnknownFieldSet.parseFrom(value).toString();
+        }
+
+        @Override
+        public byte[] encode(String text) throws Exception {
+            // текстовый вид без схемы теряет типы полей, собрать из него сообщение нельзя
+            throw new UnsupportedOperationException("protobuf values cannot be written without a schema");
+        }
+    }
+
+    /**
+     * Запись Avro в двоичном кодировании без заголовка, читается по заданной схеме и показывается как JSON.
+     * Записывается из JSON-кодирования Avro.
+     */
+    private static class AvroCodec implements ValueCodec {
+        private final String schema;
+        private final Schema parsedSchema;
+        private final GenericDatumReader<Object> reader;
+        private final GenericDatumWriter<Object> writer;
+        private BinaryDecoder decoder;
+        private BinaryEncoder encoder;
+
+        private AvroCodec(String schema) {
+            this.schema = schema;
+            this.parsedSchema = new Schema.Parser().parse(schema);
+            this.reader = new GenericDatumReader<>(parsedSchema);
+            this.writer = new GenericDatumWriter<>(parsedSchema);
+        }
+
+        @Override
+        public String getName() {
+            return AVRO;
+        }
+
+        @Override
+        public String getSpec() {
+            return avroSpec(schema);
+        }
+
+        @Override
+        public synchronized String decode(byte[] value) throws Exception {
+            decoder = DecoderFactory.get().binaryDecoder(value, decoder);
+            Object datum = reader.read(null, decoder);
+            if (!decoder.isEnd())
+                throw new IllegalArgumentException("Trailing bytes after Avro datum");
+            return String.valueOf(datum);
+        }
+
+        @Override
+        public synchronized byte[] encode(String text) throws Exception {
+            Object datum = reader.read(null, DecoderFactory.get().jsonDecoder(parsedSchema, text));
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            encoder = EncoderFactory.get().binaryEncoder(output, encoder);
+            writer.write(datum, encoder);
+            encoder.flush();
+            return output.toByteArray();
+        }
+    }
+}
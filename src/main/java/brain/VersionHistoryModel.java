@@ -0,0 +1,214 @@
+package brain;
+
+import com.yammer.metrics.core.TimerContext;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.log4j.Logger;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.text.DateFormat;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Модель истории версий ячейки или всех столбцов семейства строки, от новых версий к старым.
+ * Версии читаются страницами через {@link DatabaseWorker#getVersions} по мере прокрутки, поэтому ячейки
+ * с тысячами версий не читаются целиком, а прочитанные страницы сразу появляются в таблице.
+ * Значения декодируются назначенными кодеками только при отрисовке и запоминаются.
+ * Все изменения модели выполняются в потоке обработки событий Swing.
+ */
+public class VersionHistoryModel extends AbstractTableModel implements ChunkPublisher.Consumer<KeyValue> {
+    public static final int TIMESTAMP_COLUMN = 0;
+    public static final int QUALIFIER_COLUMN = 1;
+    public static final int VALUE_COLUMN = 2;
+    public static final int PAGE_SIZE = 200;
+    private static final int PREFETCH_DISTANCE = PAGE_SIZE / 2;
+    private static final int DECODED_CACHE_SIZE = 1024;
+    private static final ResourceBundle resourceBundle = ResourceBundle.getBundle("MainFormResources");
+    private final Logger logger = Logger.getLogger(VersionHistoryModel.class);
+    private final DatabaseWorker databaseWorker;
+    private final String tableName;
+    private final byte[] row;
+    private final byte[] family;
+    private final byte[] qualifier;
+    private final String familyName;
+    private final String encoding;
+    private final JProgressBar progressBar;
+    private final DateFormat dateFormat = DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.MEDIUM);
+    private final List<KeyValue> versions = new ArrayList<>();
+    private final ChunkPublisher<KeyValue> publisher = new ChunkPublisher<>(this);
+    private final Map<Integer, String> decoded = new LinkedHashMap<Integer, String>(DECODED_CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest) {
+            return size() > DECODED_CACHE_SIZE;
+        }
+    };
+    private final AtomicBoolean loading = new AtomicBoolean();
+    private final AtomicInteger wanted = new AtomicInteger();
+    // состояние фонового чтения
+    private volatile boolean exhausted;
+    private volatile boolean closed;
+    private volatile int fetched;
+    private volatile long beforeTimestamp = Long.MAX_VALUE;
+
+    /**
+     * @param qualifier столбец или null - история всех столбцов семейства
+     * @param encoding  кодировка значений без кодека
+     */
+    public VersionHistoryModel(DatabaseWorker databaseWorker, String tableName, byte[] row, byte[] family,
+                               byte[] qualifier, String encoding, JProgressBar progressBar) {
+        this.databaseWorker = databaseWorker;
+        this.tableName = tableName;
+        this.row = row;
+        this.family = family;
+        this.qualifier = qualifier;
+        this.familyName = Bytes.toString(family);
+        this.encoding = encoding;
+        this.progressBar = progressBar;
+    }
+
+    @Override
+    public int getRowCount() {
+        return versions.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return 3;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        switch (column) {
+            case TIMESTAMP_COLUMN:
+                return resourceBundle.getString("versionTimestamp");
+            case QUALIFIER_COLUMN:
+                return resourceBundle.getString("cellsQualifier");
+            default:
+                return resourceBundle.getString("cellsValue");
+        }
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        if (SwingUtilities.isEventDispatchThread() && rowIndex + PREFETCH_DISTANCE >= versions.size())
+            requestVersions(rowIndex + PAGE_SIZE);
+        KeyValue version = versions.get(rowIndex);
+        switch (columnIndex) {
+            case TIMESTAMP_COLUMN:
+                return dateFormat.format(new Date(version.getTimestamp())) + " (" + version.getTimestamp() + ')';
+            case QUALIFIER_COLUMN:
+                return Bytes.toString(version.getQualifier());
+            default:
+                return getDecoded(rowIndex);
+        }
+    }
+
+    /**
+     * @return значение версии в назначенном столбцу кодеке
+     */
+    public String getDecoded(int rowIndex) {
+        String value = decoded.get(rowIndex);
+        if (value == null) {
+            KeyValue version = versions.get(rowIndex);
+            ValueCodec codec = databaseWorker.getValueCodecs().resolve(tableName, familyName,
+                    Bytes.toString(version.getQualifier()));
+            TimerContext timer = Diagnostics.timeDecode();
+            try {
+                value = BytesToStringConverter.toString(version.getValue(), codec, encoding);
+            } catch (UnsupportedEncodingException e) {
+                logger.error(e);
+                value = "";
+            } finally {
+                timer.stop();
+            }
+            decoded.put(rowIndex, value);
+        }
+        return value;
+    }
+
+    public KeyValue getVersion(int rowIndex) {
+        return versions.get(rowIndex);
+    }
+
+    /**
+     * Просит держать прочитанными не меньше указанного количества версий
+     */
+    public void requestVersions(int count) {
+        if (exhausted)
+            return;
+        int current;
+        do {
+            current = wanted.get();
+        } while (current < count && !wanted.compareAndSet(current, count));
+        if (fetched < count && loading.compareAndSet(false, true)) {
+            progressBar.setVisible(true);
+            progressBar.setIndeterminate(true);
+            databaseWorker.getTasks().execute(TaskExecutor.Priority.INTERACTIVE, new Runnable() {
+                @Override
+                public void run() {
+                    readPages();
+                }
+            });
+        }
+    }
+
+    public void loadNextPage() {
+        requestVersions(versions.size() + PAGE_SIZE);
+    }
+
+    private void readPages() {
+        try {
+            do {
+                while (!exhausted && !closed && fetched < wanted.get()) {
+                    List<KeyValue> page = databaseWorker.getVersions(tableName, row, family, qualifier,
+                            beforeTimestamp, PAGE_SIZE);
+                    if (page.isEmpty()) {
+                        exhausted = true;
+                        break;
+                    }
+                    beforeTimestamp = page.get(page.size() - 1).getTimestamp();
+                    fetched += page.size();
+                    publisher.offer(page);
+                }
+                loading.set(false);
+                // спрос мог вырасти, пока мы решали остановиться
+            } while (!exhausted && !closed && fetched < wanted.get() && loading.compareAndSet(false, true));
+        } catch (IOException e) {
+            logger.error(e);
+            exhausted = true;
+            loading.set(false);
+        }
+        // пустая порция гарантирует ещё один кадр, который спрячет индикатор прогресса
+        publisher.offer(Collections.<KeyValue>emptyList());
+    }
+
+    @Override
+    public void publish(List<KeyValue> chunk) {
+        if (chunk.isEmpty() || closed)
+            return;
+        int from = versions.size();
+        versions.addAll(chunk);
+        fireTableRowsInserted(from, versions.size() - 1);
+    }
+
+    @Override
+    public void frameFinished() {
+        if (!loading.get()) {
+            progressBar.setIndeterminate(false);
+            progressBar.setVisible(false);
+        }
+    }
+
+    /**
+     * Прекращает фоновое чтение, модель больше не будет пополняться
+     */
+    public void close() {
+        closed = true;
+        exhausted = true;
+    }
+}
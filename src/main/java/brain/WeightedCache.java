@@ -0,0 +1,136 @@
+package brain;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Потокобезопасный LRU-кэш, ограниченный суммарным весом значений в байтах.
+ * Записи старше заданного времени жизни считаются отсутствующими и удаляются при обращении.
+ * Ведёт счётчики попаданий, промахов и вытеснений.
+ *
+ * @param <K> тип ключа
+ * @param <V> тип значения
+ */
+public class WeightedCache<K, V> {
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Weigher<V> weigher;
+    private final long maxWeight;
+    private final long timeToLiveMillis;
+    private long weight;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param maxWeight        максимальный суммарный вес значений в байтах
+     * @param timeToLiveMillis время жизни записи, 0 - без ограничения
+     * @param weigher          оценка веса значения
+     */
+    public WeightedCache(long maxWeight, long timeToLiveMillis, Weigher<V> weigher) {
+        this.maxWeight = maxWeight;
+        this.timeToLiveMillis = timeToLiveMillis;
+        this.weigher = weigher;
+    }
+
+    /**
+     * @return значение или null, если его нет или оно устарело
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry != null && timeToLiveMillis > 0 && System.currentTimeMillis() - entry.created > timeToLiveMillis) {
+            remove(key);
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value;
+    }
+
+    /**
+     * Кладёт значение и вытесняет давно не использованные записи, пока вес не станет допустимым.
+     * Значение тяжелее всего кэша не сохраняется.
+     */
+    public synchronized void put(K key, V value) {
+        remove(key);
+        long valueWeight = weigher.weigh(value);
+        if (valueWeight > maxWeight)
+            return;
+        entries.put(key, new Entry<>(value, valueWeight, System.currentTimeMillis()));
+        weight += valueWeight;
+        Iterator<Map.Entry<K, Entry<V>>> eldest = entries.entrySet().iterator();
+        while (weight > maxWeight && eldest.hasNext()) {
+            weight -= eldest.next().getValue().weight;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized void invalidate(K key) {
+        remove(key);
+    }
+
+    public synchronized void invalidateAll() {
+        entries.clear();
+        weight = 0;
+    }
+
+    private void remove(K key) {
+        Entry<V> entry = entries.remove(key);
+        if (entry != null)
+            weight -= entry.weight;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "WeightedCache{" +
+                "size=" + entries.size() +
+                ", weight=" + weight +
+                ", hits=" + hits +
+                ", misses=" + misses +
+                ", evictions=" + evictions +
+                '}';
+    }
+
+    /**
+     * Оценка веса значения в байтах
+     */
+    public interface Weigher<V> {
+        long weigh(V value);
+    }
+
+    private static class Entry<V> {
+        private final V value;
+        private final long weight;
+        private final long created;
+
+        private Entry(V value, long weight, long created) {
+            this.value = value;
+            this.weight = weight;
+            this.created = created;
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package brain;
+
+import com.yammer.metrics.core.TimerContext;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.log4j.Logger;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.Future;
+
+/**
+ * Модель таблицы ячеек одного семейства строки, показанной транспонированно: столбец и его значение на строку таблицы.
+ * Столбцы читаются страницами через {@link DatabaseWorker#getColumnsAsync} по мере прокрутки, поэтому строки
+ * с сотнями тысяч столбцов не читаются целиком. Имена и значения прочитанных столбцов лежат в {@link RowKeyStore},
+ * а значения декодируются назначенными кодеками только для ячеек, которые JTable запрашивает для отрисовки.
+ * Все изменения модели, включая запросы страниц, выполняются в потоке обработки событий Swing.
+ */
+public class WideRowTableModel extends AbstractTableModel {
+    public static final int QUALIFIER_COLUMN = 0;
+    public static final int VALUE_COLUMN = 1;
+    public static final int PAGE_SIZE = 500;
+    private static final int PREFETCH_DISTANCE = PAGE_SIZE / 2;
+    private static final int DECODED_CACHE_SIZE = 1024;
+    private static final ResourceBundle resourceBundle = ResourceBundle.getBundle("MainFormResources");
+    private final Logger logger = Logger.getLogger(WideRowTableModel.class);
+    private final DatabaseWorker databaseWorker;
+    private final String tableName;
+    private final byte[] row;
+    private final byte[] family;
+    private final String familyName;
+    private final JProgressBar progressBar;
+    private final RowKeyStore qualifiers = new RowKeyStore();
+    private final RowKeyStore values = new RowKeyStore();
+    private long[] timestamps = new long[PAGE_SIZE];
+    private final Map<Integer, String> decoded = new LinkedHashMap<Integer, String>(DECODED_CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest) {
+            return size() > DECODED_CACHE_SIZE;
+        }
+    };
+    // введённый текст ячейки, пока TableCellListener не превратил его в изменение
+    private final Map<Integer, String> typed = new HashMap<>();
+    // значения, которые стали известны после чтения строки: записанные из окна и найденные при конфликтах
+    private final Map<ByteBuffer, KeyValue> latest = new HashMap<>();
+    private final EditJournal editJournal;
+    private String encoding;
+    // состояние чтения страниц
+    private Future<List<KeyValue>> pageRead;
+    private int wanted;
+    private boolean exhausted;
+    private byte[] lastQualifier;
+
+    /**
+     * @param editJournal журнал изменений; ожидающие записи значения показываются вместо прочитанных
+     */
+    public WideRowTableModel(DatabaseWorker databaseWorker, EditJournal editJournal, String tableName, byte[] row,
+                             byte[] family, String encoding, JProgressBar progressBar) {
+        this.databaseWorker = databaseWorker;
+        this.editJournal = editJournal;
+        this.tableName = tableName;
+        this.row = row;
+        this.family = family;
+        this.familyName = Bytes.toString(family);
+        this.encoding = encoding;
+        this.progressBar = progressBar;
+    }
+
+    @Override
+    public int getRowCount() {
+        return qualifiers.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return 2;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return resourceBundle.getString(column == QUALIFIER_COLUMN ? "cellsQualifier" : "cellsValue");
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        if (SwingUtilities.isEventDispatchThread() && rowIndex + PREFETCH_DISTANCE >= qualifiers.size())
+            requestColumns(rowIndex + PAGE_SIZE);
+        if (columnIndex == QUALIFIER_COLUMN)
+            return getQualifierName(rowIndex);
+        String value = typed.get(rowIndex);
+        if (value != null)
+            return value;
+        value = decoded.get(rowIndex);
+        if (value == null) {
+            value = decode(rowIndex, getCurrentValue(rowIndex));
+            decoded.put(rowIndex, value);
+        }
+        return value;
+    }
+
+    /**
+     * @return ожидающее записи, записанное из окна или прочитанное значение - что новее
+     */
+    private byte[] getCurrentValue(int rowIndex) {
+        CellEdit pending = editJournal.get(tableName, row, family, qualifiers.get(rowIndex));
+        if (pending != null)
+            return pending.getValue();
+        KeyValue known = getLatest(rowIndex);
+        return known != null ? known.getValue() : values.get(rowIndex);
+    }
+
+    private KeyValue getLatest(int rowIndex) {
+        return latest.isEmpty() ? null : latest.get(ByteBuffer.wrap(qualifiers.get(rowIndex)));
+    }
+
+    private String decode(int rowIndex, byte[] value) {
+        if (value == null)
+            return "";
+        ValueCodec codec = databaseWorker.getValueCodecs().resolve(tableName, familyName, getQualifierName(rowIndex));
+        TimerContext timer = Diagnostics.timeDecode();
+        try {
+            return BytesToStringConverter.toString(value, codec, encoding);
+        } catch (UnsupportedEncodingException e) {
+            logger.error(e);
+            return "";
+        } finally {
+            timer.stop();
+        }
+    }
+
+    @Override
+    public boolean isCellEditable(int rowIndex, int columnIndex) {
+        return columnIndex == VALUE_COLUMN;
+    }
+
+    @Override
+    public void setValueAt(Object value, int rowIndex, int columnIndex) {
+        if (columnIndex != VALUE_COLUMN)
+            return;
+        typed.put(rowIndex, String.valueOf(value));
+        fireTableCellUpdated(rowIndex, columnIndex);
+    }
+
+    /**
+     * Кладёт новое значение ячейки в журнал изменений, таблица сразу показывает его
+     */
+    public void stage(int rowIndex, byte[] value) {
+        byte[] qualifier = qualifiers.get(rowIndex);
+        CellEdit previous = editJournal.get(tableName, row, family, qualifier);
+        CellEdit edit;
+        if (previous != null) {
+            // повторная правка ждёт то же значение, что видел пользователь до первой
+            edit = new CellEdit(tableName, row, family, qualifier, value,
+                    previous.getExpectedValue(), previous.getExpectedTimestamp());
+        } else {
+            KeyValue known = getLatest(rowIndex);
+            edit = known != null
+                    ? new CellEdit(tableName, row, family, qualifier, value, known.getValue(), known.getTimestamp())
+                    : new CellEdit(tableName, row, family, qualifier, value, values.get(rowIndex), timestamps[rowIndex]);
+        }
+        editJournal.stage(edit);
+        typed.remove(rowIndex);
+        decoded.remove(rowIndex);
+        fireTableCellUpdated(rowIndex, VALUE_COLUMN);
+    }
+
+    /**
+     * Забывает введённый текст, который не стал изменением
+     */
+    public void cancelTyped(int rowIndex) {
+        typed.remove(rowIndex);
+        fireTableCellUpdated(rowIndex, VALUE_COLUMN);
+    }
+
+    /**
+     * @return ждёт ли значение ячейки записи
+     */
+    public boolean isPending(int rowIndex) {
+        return editJournal.get(tableName, row, family, qualifiers.get(rowIndex)) != null;
+    }
+
+    /**
+     * Показывает записанные значения без повторного чтения строки
+     *
+     * @param edits записанные изменения, изменения других строк пропускаются
+     */
+    public void editsCommitted(List<CellEdit> edits) {
+        for (CellEdit edit : edits) {
+            // время записанного значения назначил сервер и оно неизвестно
+            if (isThisRow(edit))
+                latest.put(ByteBuffer.wrap(edit.getQualifier()),
+                        new KeyValue(row, family, edit.getQualifier(), 0L, edit.getValue()));
+        }
+        editsChanged();
+    }
+
+    /**
+     * Показывает текущие значения ячеек, которые успели изменить другие, без повторного чтения строки
+     */
+    public void conflictsFound(List<EditConflict> conflicts) {
+        for (EditConflict conflict : conflicts) {
+            CellEdit edit = conflict.getEdit();
+            if (isThisRow(edit))
+                latest.put(ByteBuffer.wrap(edit.getQualifier()), new KeyValue(row, family, edit.getQualifier(),
+                        conflict.getCurrentTimestamp(), conflict.getCurrentValue()));
+        }
+        editsChanged();
+    }
+
+    private boolean isThisRow(CellEdit edit) {
+        return tableName.equals(edit.getTableName()) && Arrays.equals(row, edit.getRow())
+                && Arrays.equals(family, edit.getFamily());
+    }
+
+    /**
+     * Перерисовывает значения после изменения журнала
+     */
+    public void editsChanged() {
+        decoded.clear();
+        if (qualifiers.size() > 0)
+            fireTableRowsUpdated(0, qualifiers.size() - 1);
+    }
+
+    /**
+     * @return исходные байты имени столбца в строке таблицы
+     */
+    public byte[] getQualifierAt(int rowIndex) {
+        return qualifiers.get(rowIndex);
+    }
+
+    /**
+     * @return имя столбца так, как его видят назначения кодеков
+     */
+    public String getQualifierName(int rowIndex) {
+        return Bytes.toString(qualifiers.get(rowIndex));
+    }
+
+    /**
+     * Меняет кодировку значений без кодека. Столбцы не перечитываются, JTable лишь перерисовывает видимые ячейки.
+     */
+    public void setEncoding(String encoding) {
+        if (encoding.equals(this.encoding))
+            return;
+        this.encoding = encoding;
+        decoded.clear();
+        if (qualifiers.size() > 0)
+            fireTableRowsUpdated(0, qualifiers.size() - 1);
+    }
+
+    public void loadNextPage() {
+        requestColumns(qualifiers.size() + PAGE_SIZE);
+    }
+
+    /**
+     * Просит держать прочитанными не меньше указанного количества столбцов
+     */
+    public void requestColumns(int count) {
+        wanted = Math.max(wanted, count);
+        readNextPage();
+    }
+
+    /**
+     * Ставит в очередь чтение следующей страницы, если столбцов ещё не хватает и страница уже не читается.
+     * Следующая страница запрашивается из callback предыдущей.
+     */
+    private void readNextPage() {
+        if (pageRead != null)
+            return;
+        if (exhausted || qualifiers.size() >= wanted) {
+            progressBar.setIndeterminate(false);
+            progressBar.setVisible(false);
+            return;
+        }
+        progressBar.setVisible(true);
+        progressBar.setIndeterminate(true);
+        pageRead = databaseWorker.getColumnsAsync(tableName, row, family, lastQualifier, PAGE_SIZE,
+                new TaskCallback<List<KeyValue>>() {
+                    @Override
+                    public void succeeded(List<KeyValue> page) {
+                        pageRead = null;
+                        if (page.size() < PAGE_SIZE)
+                            exhausted = true;
+                        if (!page.isEmpty()) {
+                            lastQualifier = page.get(page.size() - 1).getQualifier();
+                            append(page);
+                        }
+                        readNextPage();
+                    }
+
+                    @Override
+                    public void failed(Throwable cause) {
+                        pageRead = null;
+                        logger.error(cause);
+                        exhausted = true;
+                        readNextPage();
+                    }
+                });
+    }
+
+    private void append(List<KeyValue> page) {
+        int from = qualifiers.size();
+        if (from + page.size() > timestamps.length)
+            timestamps = Arrays.copyOf(timestamps, Math.max(from + page.size(), timestamps.length * 2));
+        for (KeyValue keyValue : page) {
+            timestamps[qualifiers.size()] = keyValue.getTimestamp();
+            qualifiers.add(keyValue.getQualifier());
+            values.add(keyValue.getValue());
+        }
+        fireTableRowsInserted(from, qualifiers.size() - 1);
+    }
+
+    /**
+     * Отменяет чтение страницы, если оно ещё идёт: ещё не начатое чтение не обращается к кластеру,
+     * а результат начатого не попадёт в модель. Модель больше не будет пополняться.
+     */
+    public void close() {
+        exhausted = true;
+        if (pageRead != null) {
+            pageRead.cancel(false);
+            pageRead = null;
+            progressBar.setIndeterminate(false);
+            progressBar.setVisible(false);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package ui;
+
+import brain.BulkOperation;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.text.MessageFormat;
+import java.util.ResourceBundle;
+
+/**
+ * Немодальное окно хода экспорта или импорта: выполненная доля, строки, ячейки и скорость.
+ * Счётчики операции опрашиваются таймером, сама операция в поток обработки событий ничего не присылает.
+ */
+public class BulkProgressDialog extends JDialog {
+    private static final ResourceBundle resourceBundle = ResourceBundle.getBundle("MainFormResources");
+    private static final int REFRESH_INTERVAL_MS = 500;
+    private static final int PROGRESS_STEPS = 1000;
+    private static final double MEGABYTE = 1024 * 1024;
+    private final BulkOperation operation;
+    private final JProgressBar progressBar = new JProgressBar();
+    private final JLabel statusLabel = new JLabel(" ");
+    private final Timer refreshTimer;
+
+    public BulkProgressDialog(Frame owner, String title, BulkOperation operation) {
+        super(owner, title, false);
+        this.operation = operation;
+        progressBar.setMaximum(PROGRESS_STEPS);
+        progressBar.setStringPainted(true);
+        final JButton cancelButton = new JButton(resourceBundle.getString("cancelBulk"));
+        JPanel panel = new JPanel(new BorderLayout(5, 5));
+        panel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        panel.add(progressBar, BorderLayout.NORTH);
+        panel.add(statusLabel, BorderLayout.CENTER);
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttons.add(cancelButton);
+        panel.add(buttons, BorderLayout.SOUTH);
+        setContentPane(panel);
+        setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
+
+        cancelButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                cancelButton.setEnabled(false);
+                BulkProgressDialog.this.operation.cancel();
+            }
+        });
+        refreshTimer = new Timer(REFRESH_INTERVAL_MS, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                refresh();
+            }
+        });
+        refresh();
+        pack();
+        setLocationRelativeTo(owner);
+        refreshTimer.start();
+    }
+
+    private void refresh() {
+        progressBar.setValue((int) (operation.getProgress() * PROGRESS_STEPS));
+        progressBar.setString(MessageFormat.format(resourceBundle.getString("bulkProgress"), operation.getProgress()));
+        statusLabel.setText(getStatus(operation));
+    }
+
+    /**
+     * @return итоги операции для показа пользователю
+     */
+    public static String getStatus(BulkOperation operation) {
+        return MessageFormat.format(resourceBundle.getString("bulkStatus"),
+                operation.getRows(), operation.getCells(), operation.getBytes() / MEGABYTE,
+                operation.getRowsPerSecond(), operation.getBytesPerSecond() / MEGABYTE,
+                operation.getElapsedMillis() / 1000);
+    }
+
+    @Override
+    public void dispose() {
+        refreshTimer.stop();
+        super.dispose();
+    }
+}
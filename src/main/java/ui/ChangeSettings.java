@@ -9,7 +9,6 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.ResourceBundle;
 
 public class ChangeSettings extends JDialog {
@@ -64,12 +63,11 @@ public class ChangeSettings extends JDialog {
         if (databaseWorker != null && mainForm != null && settingValue.getText().length() > 0) {
             databaseWorker.setSetting(settingNameLabel.getText(), settingValue.getText());
             mainForm.loadTables();
-            mainForm.setUtf8ListModels(new HashMap<String, DefaultListModel<String>>());
+            mainForm.clearRowsListModels();
             mainForm.getTablesJList().removeAll();
             mainForm.getFamiliesJList().removeAll();
             mainForm.getRowsJList().removeAll();
-            mainForm.getTableData().setRowCount(0);
-            mainForm.getTableData().setColumnCount(0);
+            mainForm.clearCellsTable();
             mainForm.setTablesNames(null);
         }
         dispose();
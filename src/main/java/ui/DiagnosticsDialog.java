@@ -0,0 +1,158 @@
+package ui;
+
+import brain.Diagnostics;
+import brain.EdtWatchdog;
+import com.yammer.metrics.core.Counter;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.Histogram;
+import com.yammer.metrics.core.Metric;
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.stats.Snapshot;
+
+import javax.swing.*;
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.ResourceBundle;
+
+/**
+ * Немодальное окно метрик приложения: число вызовов, p50/p99/максимум времени и темп для замеров,
+ * значения счётчиков и показателей, а под ними последние зависания потока событий со стеками.
+ * Обновляется раз в секунду, здесь же включается публикация в JMX.
+ */
+public class DiagnosticsDialog extends JDialog {
+    private static final ResourceBundle resourceBundle = ResourceBundle.getBundle("MainFormResources");
+    private static final int REFRESH_INTERVAL_MS = 1000;
+    private final MetricsTableModel metricsModel = new MetricsTableModel();
+    private final JTextArea stallsArea = new JTextArea(10, 80);
+    private EdtWatchdog.Stall lastStall;
+    private final Timer refreshTimer;
+
+    public DiagnosticsDialog(Frame owner) {
+        super(owner, resourceBundle.getString("diagnosticsTitle"), false);
+        final JCheckBox jmxCheckBox = new JCheckBox(resourceBundle.getString("diagnosticsJmx"),
+                Diagnostics.isJmxEnabled());
+        JPanel panel = new JPanel(new BorderLayout(5, 5));
+        panel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        stallsArea.setEditable(false);
+        stallsArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, stallsArea.getFont().getSize()));
+        JPanel stallsPanel = new JPanel(new BorderLayout(5, 5));
+        stallsPanel.add(new JLabel(resourceBundle.getString("diagnosticsStalls")), BorderLayout.NORTH);
+        stallsPanel.add(new JScrollPane(stallsArea), BorderLayout.CENTER);
+        panel.add(new JSplitPane(JSplitPane.VERTICAL_SPLIT, new JScrollPane(new JTable(metricsModel)), stallsPanel),
+                BorderLayout.CENTER);
+        panel.add(jmxCheckBox, BorderLayout.SOUTH);
+        setContentPane(panel);
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+
+        jmxCheckBox.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                Diagnostics.setJmxEnabled(jmxCheckBox.isSelected());
+            }
+        });
+        refreshTimer = new Timer(REFRESH_INTERVAL_MS, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                refresh();
+            }
+        });
+        refresh();
+        pack();
+        setLocationRelativeTo(owner);
+        refreshTimer.start();
+    }
+
+    private void refresh() {
+        metricsModel.refresh();
+        List<EdtWatchdog.Stall> stalls = EdtWatchdog.getStalls();
+        EdtWatchdog.Stall newest = stalls.isEmpty() ? null : stalls.get(0);
+        if (newest == lastStall)
+            return;
+        // текст перестраивается только при новом зависании, чтобы не сбрасывать прокрутку
+        lastStall = newest;
+        StringBuilder text = new StringBuilder();
+        for (EdtWatchdog.Stall stall : stalls) {
+            text.append(stall).append('\n');
+        }
+        stallsArea.setText(text.toString());
+        stallsArea.setCaretPosition(0);
+    }
+
+    @Override
+    public void dispose() {
+        refreshTimer.stop();
+        super.dispose();
+    }
+
+    /**
+     * Метрики по строке на метрику; значения снимаются при обновлении, а не при отрисовке
+     */
+    private static class MetricsTableModel extends AbstractTableModel {
+        private final String[] columns = resourceBundle.getString("diagnosticsColumns").split(",");
+        private List<Object[]> rows = new ArrayList<>();
+
+        void refresh() {
+            List<Object[]> snapshot = new ArrayList<>();
+            for (Map.Entry<MetricName, Metric> entry : Diagnostics.getMetrics().entrySet()) {
+                snapshot.add(toRow(entry.getKey(), entry.getValue()));
+            }
+            rows = snapshot;
+            fireTableDataChanged();
+        }
+
+        private static Object[] toRow(MetricName name, Metric metric) {
+            String title = name.getType() + '.' + name.getName();
+            if (metric instanceof com.yammer.metrics.core.Timer) {
+                com.yammer.metrics.core.Timer timer = (com.yammer.metrics.core.Timer) metric;
+                Snapshot snapshot = timer.getSnapshot();
+                return new Object[]{title + ", " + timer.durationUnit().toString().toLowerCase(), timer.count(),
+                        format(snapshot.getMedian()), format(snapshot.get99thPercentile()), format(timer.max()),
+                        format(timer.oneMinuteRate())};
+            }
+            if (metric instanceof Histogram) {
+                Histogram histogram = (Histogram) metric;
+                Snapshot snapshot = histogram.getSnapshot();
+                return new Object[]{title, histogram.count(), format(snapshot.getMedian()),
+                        format(snapshot.get99thPercentile()), format(histogram.max()), null};
+            }
+            if (metric instanceof Counter)
+                return new Object[]{title, ((Counter) metric).count(), null, null, null, null};
+            if (metric instanceof Gauge) {
+                Object value = ((Gauge<?>) metric).value();
+                return new Object[]{title, null, null, null, null,
+                        value instanceof Double ? format((Double) value) : value};
+            }
+            return new Object[]{title, null, null, null, null, null};
+        }
+
+        private static String format(double value) {
+            return String.format("%.2f", value);
+        }
+
+        @Override
+        public int getRowCount() {
+            return rows.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return columns.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return columns[column];
+        }
+
+        @Override
+        public Object getValueAt(int rowIndex, int columnIndex) {
+            return rows.get(rowIndex)[columnIndex];
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package ui;
+
+import brain.ExportFormat;
+import brain.ExportFormats;
+import brain.ValueCodecs;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.util.List;
+import java.util.ResourceBundle;
+
+/**
+ * Панель параметров экспорта таблицы, показывается в JOptionPane
+ */
+public class ExportPanel extends JPanel {
+    private static final ResourceBundle resourceBundle = ResourceBundle.getBundle("MainFormResources");
+    private final JComboBox<String> formatComboBox = new JComboBox<>();
+    private final JList<String> familiesList;
+    private final JTextField rangeTextField;
+    private final JComboBox<String> codecComboBox = new JComboBox<>();
+    private final JCheckBox parallelCheckBox = new JCheckBox(resourceBundle.getString("exportParallel"), true);
+    private final JTextField fileTextField = new JTextField(30);
+
+    /**
+     * @param families семейства таблицы, по умолчанию выбраны все
+     * @param range    поиск ключей в синтаксисе строки поиска
+     */
+    public ExportPanel(String tableName, String[] families, String range) {
+        super(new BorderLayout(5, 5));
+        for (ExportFormat format : ExportFormats.ALL) {
+            formatComboBox.addItem(format.getName());
+        }
+        familiesList = new JList<>(families);
+        familiesList.setVisibleRowCount(Math.min(families.length, 6));
+        familiesList.setSelectionInterval(0, families.length - 1);
+        rangeTextField = new JTextField(range);
+        // пустой кодек - назначенные столбцам кодеки и выбранная кодировка
+        codecComboBox.addItem("");
+        for (String name : ValueCodecs.SIMPLE_NAMES) {
+            codecComboBox.addItem(name);
+        }
+        fileTextField.setText(new File(System.getProperty("user.home"),
+                tableName + '.' + ExportFormats.CSV.getExtension()).getPath());
+        JButton browseButton = new JButton("...");
+
+        JPanel fields = new JPanel(new GridLayout(4, 2, 5, 5));
+        fields.add(new JLabel(resourceBundle.getString("exportFormat")));
+        fields.add(formatComboBox);
+        fields.add(new JLabel(resourceBundle.getString("exportRange")));
+        fields.add(rangeTextField);
+        fields.add(new JLabel(resourceBundle.getString("valueCodec")));
+        fields.add(codecComboBox);
+        fields.add(parallelCheckBox);
+        add(fields, BorderLayout.NORTH);
+        JPanel familiesPanel = new JPanel(new BorderLayout());
+        familiesPanel.add(new JLabel(resourceBundle.getString("exportFamilies")), BorderLayout.NORTH);
+        familiesPanel.add(new JScrollPane(familiesList), BorderLayout.CENTER);
+        add(familiesPanel, BorderLayout.CENTER);
+        JPanel filePanel = new JPanel(new BorderLayout(5, 5));
+        filePanel.add(new JLabel(resourceBundle.getString("exportFile")), BorderLayout.WEST);
+        filePanel.add(fileTextField, BorderLayout.CENTER);
+        filePanel.add(browseButton, BorderLayout.EAST);
+        add(filePanel, BorderLayout.SOUTH);
+
+        formatComboBox.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                String path = fileTextField.getText();
+                int dot = path.lastIndexOf('.');
+                if (dot > path.lastIndexOf(File.separatorChar))
+                    fileTextField.setText(path.substring(0, dot + 1) + getFormat().getExtension());
+                codecComboBox.setEnabled(getFormat() != ExportFormats.SEQUENCE_FILE);
+            }
+        });
+        browseButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                JFileChooser fileChooser = new JFileChooser();
+                fileChooser.setSelectedFile(getFile());
+                if (fileChooser.showSaveDialog(ExportPanel.this) == JFileChooser.APPROVE_OPTION)
+                    fileTextField.setText(fileChooser.getSelectedFile().getPath());
+            }
+        });
+    }
+
+    public ExportFormat getFormat() {
+        return ExportFormats.ALL.get(formatComboBox.getSelectedIndex());
+    }
+
+    /**
+     * @return выбранные семейства, пустой массив - все
+     */
+    public byte[][] getFamilies() {
+        if (familiesList.getSelectedIndices().length == familiesList.getModel().getSize())
+            return new byte[0][];
+        List<String> selected = familiesList.getSelectedValuesList();
+        byte[][] families = new byte[selected.size()][];
+        for (int i = 0; i < families.length; i++) {
+            families[i] = Bytes.toBytes(selected.get(i));
+        }
+        return families;
+    }
+
+    public String getRange() {
+        return rangeTextField.getText();
+    }
+
+    /**
+     * @return описание выбранного кодека, пустая строка - кодеки, назначенные столбцам
+     */
+    public String getCodecSpec() {
+        return (String) codecComboBox.getSelectedItem();
+    }
+
+    public boolean isParallel() {
+        return parallelCheckBox.isSelected();
+    }
+
+    public File getFile() {
+        return new File(fileTextField.getText().trim());
+    }
+}
@@ -0,0 +1,124 @@
+package ui;
+
+import brain.ExportFormat;
+import brain.ExportFormats;
+import brain.ValueCodecs;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.util.ResourceBundle;
+
+/**
+ * Панель параметров импорта в таблицу, показывается в JOptionPane
+ */
+public class ImportPanel extends JPanel {
+    private static final ResourceBundle resourceBundle = ResourceBundle.getBundle("MainFormResources");
+    private static final int DEFAULT_WRITERS = 4;
+    private final JTextField fileTextField = new JTextField(30);
+    private final JComboBox<String> formatComboBox = new JComboBox<>();
+    private final JComboBox<String> codecComboBox = new JComboBox<>();
+    private final JSpinner writersSpinner = new JSpinner(new SpinnerNumberModel(DEFAULT_WRITERS, 1, 64, 1));
+    private final JSpinner maxRowsSpinner = new JSpinner(new SpinnerNumberModel(0, 0, Integer.MAX_VALUE, 1000));
+    private final JCheckBox bulkLoadCheckBox = new JCheckBox(resourceBundle.getString("importBulkLoad"));
+
+    public ImportPanel() {
+        super(new BorderLayout(5, 5));
+        for (ExportFormat format : ExportFormats.ALL) {
+            formatComboBox.addItem(format.getName());
+        }
+        // пустой кодек - назначенные столбцам кодеки и выбранная кодировка
+        codecComboBox.addItem("");
+        for (String name : ValueCodecs.SIMPLE_NAMES) {
+            // protobuf без схемы не записывается
+            if (!ValueCodecs.PROTOBUF.equals(name))
+                codecComboBox.addItem(name);
+        }
+        JButton browseButton = new JButton("...");
+
+        JPanel filePanel = new JPanel(new BorderLayout(5, 5));
+        filePanel.add(new JLabel(resourceBundle.getString("exportFile")), BorderLayout.WEST);
+        filePanel.add(fileTextField, BorderLayout.CENTER);
+        filePanel.add(browseButton, BorderLayout.EAST);
+        add(filePanel, BorderLayout.NORTH);
+        JPanel fields = new JPanel(new GridLayout(5, 2, 5, 5));
+        fields.add(new JLabel(resourceBundle.getString("exportFormat")));
+        fields.add(formatComboBox);
+        fields.add(new JLabel(resourceBundle.getString("valueCodec")));
+        fields.add(codecComboBox);
+        fields.add(new JLabel(resourceBundle.getString("importWriters")));
+        fields.add(writersSpinner);
+        fields.add(new JLabel(resourceBundle.getString("importMaxRows")));
+        fields.add(maxRowsSpinner);
+        fields.add(bulkLoadCheckBox);
+        add(fields, BorderLayout.CENTER);
+
+        browseButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                JFileChooser fileChooser = new JFileChooser();
+                // каталог - части параллельного экспорта
+                fileChooser.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
+                if (fileChooser.showOpenDialog(ImportPanel.this) == JFileChooser.APPROVE_OPTION)
+                    setFile(fileChooser.getSelectedFile());
+            }
+        });
+        formatComboBox.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                codecComboBox.setEnabled(getFormat() != ExportFormats.SEQUENCE_FILE);
+            }
+        });
+        bulkLoadCheckBox.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                writersSpinner.setEnabled(!bulkLoadCheckBox.isSelected());
+                maxRowsSpinner.setEnabled(!bulkLoadCheckBox.isSelected());
+            }
+        });
+    }
+
+    /**
+     * Выбирает файл и формат по его расширению
+     */
+    private void setFile(File file) {
+        fileTextField.setText(file.getPath());
+        String name = file.getName();
+        for (int i = 0; i < ExportFormats.ALL.size(); i++) {
+            if (name.endsWith('.' + ExportFormats.ALL.get(i).getExtension()))
+                formatComboBox.setSelectedIndex(i);
+        }
+    }
+
+    public File getFile() {
+        return new File(fileTextField.getText().trim());
+    }
+
+    public ExportFormat getFormat() {
+        return ExportFormats.ALL.get(formatComboBox.getSelectedIndex());
+    }
+
+    /**
+     * @return описание выбранного кодека, пустая строка - кодеки, назначенные столбцам
+     */
+    public String getCodecSpec() {
+        return (String) codecComboBox.getSelectedItem();
+    }
+
+    public int getWriters() {
+        return (Integer) writersSpinner.getValue();
+    }
+
+    /**
+     * @return ограничение скорости в строках в секунду, 0 - без ограничения
+     */
+    public int getMaxRowsPerSecond() {
+        return (Integer) maxRowsSpinner.getValue();
+    }
+
+    public boolean isBulkLoad() {
+        return bulkLoadCheckBox.isSelected();
+    }
+}
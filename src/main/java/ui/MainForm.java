@@ -1,8 +1,29 @@
 package ui;
 
+import brain.BulkOperation;
 import brain.BytesToStringConverter;
+import brain.CellEdit;
+import brain.CommitResult;
 import brain.DatabaseWorker;
-import brain.Row;
+import brain.Diagnostics;
+import brain.EdtWatchdog;
+import brain.EditConflict;
+import brain.EditJournal;
+import brain.ExportFormat;
+import brain.RowKeySearch;
+import brain.RowKeysFilter;
+import brain.RowKeysListModel;
+import brain.RowKeysView;
+import brain.StartupLoader;
+import brain.TableExport;
+import brain.TableImport;
+import brain.TableNamesCache;
+import brain.TableStatistics;
+import brain.TaskCallback;
+import brain.TaskExecutor;
+import brain.ValueCodec;
+import brain.ValueCodecs;
+import brain.WideRowTableModel;
 import com.intellij.uiDesigner.core.GridConstraints;
 import com.intellij.uiDesigner.core.GridLayoutManager;
 import org.apache.hadoop.hbase.util.Bytes;
@@ -12,25 +33,34 @@ import org.apache.log4j.PropertyConfigurator;
 
 import javax.imageio.ImageIO;
 import javax.swing.*;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
+import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.awt.event.KeyEvent;
-import java.awt.event.KeyListener;
+import java.io.File;
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
+import java.text.DateFormat;
+import java.text.MessageFormat;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import static brain.Constants.*;
 
 public class MainForm extends JFrame {
     private final static String OS = System.getProperty("os.name").toLowerCase();
     private static final ResourceBundle resourceBundle = ResourceBundle.getBundle("MainFormResources");
-    private final static String[] settings = {"hbase.zookeeper.quorum", "hbase.rootdir", "hbase.cluster.distributed", "hbase.zookeeper.property.dataDir"};
+    private final static String ROW_KEY_PROTOTYPE = "00000000000000000000000000000000";
+    private final static int LOCAL_FILTER_DELAY_MS = 250;
+    // -Dhbaseexplorer.metrics.jmx=true публикует метрики в JMX сразу при запуске
+    private final static String METRICS_JMX_PROPERTY = "hbaseexplorer.metrics.jmx";
+    private final static String[] settings = {"hbase.zookeeper.quorum", "hbase.rootdir", "hbase.cluster.distributed", "hbase.zookeeper.property.dataDir", DatabaseWorker.SCAN_THREADS, DatabaseWorker.WRITE_BUFFER_SIZE, DatabaseWorker.BULK_LOAD_DIR};
     private final MainForm thisFrame = this;
     private final Logger logger = Logger.getLogger(this.getClass());
     private final JMenuBar jMenuBar = new JMenuBar();
@@ -52,13 +82,25 @@ public class MainForm extends JFrame {
     private JTextField searchRowTextField;
     private JProgressBar progressBar;
     private JProgressBar progressBarForRows;
-    private DatabaseWorker databaseWorker;
-    private DefaultTableModel tableData;
-    private Map<String, DefaultListModel<String>> utf8ListModels = new HashMap<>();
-    private Map<String, DefaultListModel<String>> ahciiListModels = new HashMap<>();
-    private Map<String, DefaultListModel<String>> cp1251ListModels = new HashMap<>();
-    private Map<String, DefaultListModel<String>> hexListModels = new HashMap<>();
+    // создаётся в фоне при запуске, до этого обработчики интерфейса не подключены
+    private volatile DatabaseWorker databaseWorker;
+    private WideRowTableModel cellsTableModel;
+    private Map<String, RowKeysListModel> rowsListModels = new HashMap<>();
+    private RowKeysListModel searchListModel;
     private JMenu jMenuSettings = new JMenu(resourceBundle.getString("settings"));
+    private JMenuItem scanProfileMenuItem = new JMenuItem(resourceBundle.getString("scanProfile"));
+    private JMenuItem valueCodecMenuItem = new JMenuItem(resourceBundle.getString("valueCodec"));
+    private JMenuItem diagnosticsMenuItem = new JMenuItem(resourceBundle.getString("diagnostics"));
+    private JMenu jMenuEdit = new JMenu(resourceBundle.getString("edit"));
+    private JMenuItem commitEditsMenuItem = new JMenuItem();
+    private JMenuItem discardEditsMenuItem = new JMenuItem(resourceBundle.getString("discardEdits"));
+    private JMenu jMenuTable = new JMenu(resourceBundle.getString("table"));
+    private JMenuItem exportMenuItem = new JMenuItem(resourceBundle.getString("export"));
+    private JMenuItem importMenuItem = new JMenuItem(resourceBundle.getString("import"));
+    private JMenuItem statisticsMenuItem = new JMenuItem(resourceBundle.getString("statistics"));
+    private JMenuItem cellHistoryMenuItem = new JMenuItem(resourceBundle.getString("cellHistory"));
+    private JMenuItem rowHistoryMenuItem = new JMenuItem(resourceBundle.getString("rowHistory"));
+    private final EditJournal editJournal = new EditJournal();
     private ChangeSettings changeSettingsForm;
     private String[] tablesNames = null;
     private String choosedTable;
@@ -66,8 +108,29 @@ public class MainForm extends JFrame {
     private String selectedEncoding = UTF8;
     private byte[] selectedFamily;
     private int selectedRowIndex;
+    private final RowKeysFilter rowsFilter = new RowKeysFilter();
+    private TaskExecutor.Slot familiesFetch;
+    private final TaskCallback<String[]> tablesLoaded = new TaskCallback<String[]>() {
+        @Override
+        public void succeeded(String[] names) {
+            tablesNames = names;
+            showTables();
+        }
+
+        @Override
+        public void failed(Throwable cause) {
+            showError(cause);
+            showTables();
+        }
+    };
+    private final Timer localFilterTimer = new Timer(LOCAL_FILTER_DELAY_MS, new ActionListener() {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            applyLocalFilter();
+        }
+    });
 
-    // Entry-point of this window
+    // Entry-point of this window, вызывается в потоке обработки событий
     public void start() {
         try {
             Properties log4jProps = new Properties();
@@ -77,9 +140,32 @@ public class MainForm extends JFrame {
             BasicConfigurator.configure();
             logger.error(e);
         }
-        databaseWorker = new DatabaseWorker();
-        databaseWorker.loadProperties();
-        logger.info("DatabaseWorker created");
+        Diagnostics.setJmxEnabled(Boolean.getBoolean(METRICS_JMX_PROPERTY));
+        EdtWatchdog.start();
+        // подключение готовится в фоне, пока строится окно
+        StartupLoader.start(new TaskCallback<DatabaseWorker>() {
+            @Override
+            public void succeeded(DatabaseWorker worker) {
+                databaseWorker = worker;
+                familiesFetch = databaseWorker.getTasks().newSlot();
+                logger.info("DatabaseWorker created");
+                initUIHandlers();
+            }
+
+            @Override
+            public void failed(Throwable cause) {
+                showError(cause);
+            }
+        }, tablesLoaded);
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                rowsFilter.close();
+                if (databaseWorker != null)
+                    databaseWorker.close();
+                EdtWatchdog.logSummary();
+            }
+        }, "database-worker-shutdown"));
         initLookAndFeel();
         logger.info("InitLookAndFeel ended");
         try {
@@ -88,7 +174,9 @@ public class MainForm extends JFrame {
             logger.error(e);
         }
         logger.info("InitUI ended");
-        initUIHandlers();
+        // список таблиц прошлого сеанса виден сразу и заменяется настоящим, когда ответит кластер
+        tablesNames = TableNamesCache.read();
+        showTables();
     }
 
     private void initUI() throws IOException {
@@ -103,8 +191,7 @@ public class MainForm extends JFrame {
         }
 
         jTable.setAutoCreateColumnsFromModel(true);
-        tableData = new DefaultTableModel();
-        jTable.setModel(tableData);
+        jTable.setModel(new DefaultTableModel());
         //SearchTextField.setJTable(jTable);
         //SearchTextField.setTableData(tableData);
         ButtonGroup buttonGroup = new ButtonGroup();
@@ -117,11 +204,42 @@ public class MainForm extends JFrame {
         for (String setting : settings) {
             jMenuSettings.add(new JMenuItem(changeWord + ' ' + setting));
         }
+        jMenuSettings.addSeparator();
+        jMenuSettings.add(scanProfileMenuItem);
+        jMenuSettings.add(valueCodecMenuItem);
+        jMenuSettings.addSeparator();
+        jMenuSettings.add(diagnosticsMenuItem);
         jMenuBar.add(jMenuSettings);
+        jMenuEdit.add(commitEditsMenuItem);
+        jMenuEdit.add(discardEditsMenuItem);
+        jMenuBar.add(jMenuEdit);
+        jMenuTable.add(exportMenuItem);
+        jMenuTable.add(importMenuItem);
+        jMenuTable.add(statisticsMenuItem);
+        jMenuTable.addSeparator();
+        jMenuTable.add(cellHistoryMenuItem);
+        jMenuTable.add(rowHistoryMenuItem);
+        jMenuBar.add(jMenuTable);
+        updateEditsMenu();
+        // ожидающие записи значения выделяются жирным
+        jTable.setDefaultRenderer(Object.class, new DefaultTableCellRenderer() {
+            @Override
+            public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                           boolean hasFocus, int row, int column) {
+                Component component = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+                boolean pending = cellsTableModel != null && table.getModel() == cellsTableModel
+                        && cellsTableModel.isPending(table.convertRowIndexToModel(row));
+                component.setFont(pending ? component.getFont().deriveFont(Font.BOLD) : table.getFont());
+                return component;
+            }
+        });
         setJMenuBar(jMenuBar);
 
         refreshButton.setIcon(new ImageIcon(MainForm.class.getClassLoader().getResource("refresh-icon.png")));
 
+        // Fixed cell size lets JList render only the visible keys instead of measuring the whole model
+        rowsJList.setPrototypeCellValue(ROW_KEY_PROTOTYPE);
+
         // Move the window to center of the screen
         setLocationRelativeTo(null);
         pack();
@@ -155,42 +273,40 @@ public class MainForm extends JFrame {
                 if (e.getSource() != tablesJList || tablesJList.getSelectedValue() == null)
                     return;
                 choosedTable = tablesJList.getSelectedValue();
+                closeSearch();
+                localFilterTimer.stop();
+                rowsFilter.cancel();
 
-                tablesJList.setEnabled(false);
-                try {
-                    final String[] familiesNames = databaseWorker.getFamilies(choosedTable);
-                    familiesJList.setListData(familiesNames);
-
-                    DefaultListModel<String> choosedListModel = getWantedModel();
-                    if (choosedListModel != null) {
-                        rowsJList.setModel(choosedListModel);
-                    } else {
-                        final DefaultListModel<String> utf8ListModel = new DefaultListModel<>();
-                        final DefaultListModel<String> hexListModel = new DefaultListModel<>();
-                        final DefaultListModel<String> ahciiListModel = new DefaultListModel<>();
-                        final DefaultListModel<String> cp1251ListModel = new DefaultListModel<>();
-
-                        utf8ListModels.put(choosedTable, utf8ListModel);
-                        ahciiListModels.put(choosedTable, ahciiListModel);
-                        hexListModels.put(choosedTable, hexListModel);
-                        cp1251ListModels.put(choosedTable, cp1251ListModel);
-                        rowsJList.setModel(getWantedModel());
-                        new Thread(new Runnable() {
-                            @Override
-                            public void run() {
-                                try {
-                                    databaseWorker.fillRowsToListModel(choosedTable, progressBar, hexListModel, ahciiListModel, cp1251ListModel, utf8ListModel);
-                                } catch (IOException e1) {
-                                    logger.error(e1);
-                                }
-                            }
-                        }).start();
+                final String tableName = choosedTable;
+                familiesJList.setListData(new String[0]);
+                familiesFetch.submit(TaskExecutor.Priority.INTERACTIVE, new Callable<String[]>() {
+                    @Override
+                    public String[] call() throws Exception {
+                        return databaseWorker.getFamilies(tableName);
                     }
-                } catch (IOException e1) {
-                    logger.error(e1);
+                }, new TaskCallback<String[]>() {
+                    @Override
+                    public void succeeded(String[] familiesNames) {
+                        familiesJList.setListData(familiesNames);
+                    }
+
+                    @Override
+                    public void failed(Throwable cause) {
+                        logger.error(cause);
+                    }
+                });
+
+                RowKeysListModel choosedListModel = getWantedModel();
+                if (choosedListModel != null) {
+                    choosedListModel.setEncoding(selectedEncoding);
+                    rowsJList.setModel(choosedListModel);
+                } else {
+                    choosedListModel = new RowKeysListModel(databaseWorker, choosedTable, selectedEncoding, progressBar);
+                    rowsListModels.put(choosedTable, choosedListModel);
+                    rowsJList.setModel(choosedListModel);
+                    choosedListModel.loadNextPage();
                 }
                 rowsJList.setSelectedIndex(0);
-                tablesJList.setEnabled(true);
             }
         });
 
@@ -203,8 +319,8 @@ public class MainForm extends JFrame {
                 try {
                     String selectedRowStr = rowsJList.getSelectedValue();
                     selectedRowIndex = rowsJList.getSelectedIndex();
-                    if (searchRowTextField.getText().length() < 1)
-                        selectedRow = BytesToStringConverter.toBytes(hexListModels.get(choosedTable).get(selectedRowIndex), HEX);
+                    if (rowsJList.getModel() instanceof RowKeysView)
+                        selectedRow = ((RowKeysView) rowsJList.getModel()).getKeyAt(selectedRowIndex);
                     else
                         selectedRow = BytesToStringConverter.toBytes(selectedRowStr, selectedEncoding);
                 } catch (Exception e1) {
@@ -268,10 +384,21 @@ public class MainForm extends JFrame {
                 SwingUtilities.invokeLater(new Runnable() {
                     @Override
                     public void run() {
-                        rowsJList.setModel(getWantedModel());
-                        searchRowTextField.getKeyListeners()[0].keyTyped(new KeyEvent(thisFrame, 0, new Date().getTime(), 0, KeyEvent.KEY_PRESSED, KeyEvent.CHAR_UNDEFINED, searchRowTextField.getText().length()));
-                        if (viewPanel.isVisible())
-                            loadDataToJTable();
+                        if (searchListModel != null && rowsJList.getModel() == searchListModel) {
+                            searchListModel.setEncoding(selectedEncoding);
+                            if (cellsTableModel != null)
+                                cellsTableModel.setEncoding(selectedEncoding);
+                            return;
+                        }
+                        RowKeysListModel rowsModel = getWantedModel();
+                        if (rowsModel != null) {
+                            rowsModel.setEncoding(selectedEncoding);
+                            rowsJList.setModel(rowsModel);
+                        }
+                        if (!searchRowTextField.getText().isEmpty())
+                            applyLocalFilter();
+                        if (cellsTableModel != null)
+                            cellsTableModel.setEncoding(selectedEncoding);
                         tablesJList.setSelectedValue(choosedTable, true);
                     }
                 });
@@ -282,7 +409,7 @@ public class MainForm extends JFrame {
         asciiRadioButton.addActionListener(encodingWasChangedListener);
         utf8RadioButton.addActionListener(encodingWasChangedListener);
         windows1251RadioButton.addActionListener(encodingWasChangedListener);
-        for (int i = 0; i < jMenuBar.getMenu(0).getItemCount(); i++) {
+        for (int i = 0; i < settings.length; i++) {
             final int finalI = i;
             jMenuBar.getMenu(0).getItem(i).addActionListener(new ActionListener() {
                 @Override
@@ -302,70 +429,152 @@ public class MainForm extends JFrame {
             });
         }
 
-
-        refreshButton.addActionListener(new ActionListener() {
+        scanProfileMenuItem.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
+                if (choosedTable == null)
+                    return;
+                ScanProfilePanel scanProfilePanel = new ScanProfilePanel(databaseWorker.getScanProfile(choosedTable));
+                int answer = JOptionPane.showConfirmDialog(thisFrame, scanProfilePanel,
+                        resourceBundle.getString("scanProfile") + ' ' + choosedTable,
+                        JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+                if (answer != JOptionPane.OK_OPTION)
+                    return;
                 try {
-                    tablesJList.setEnabled(false);
-                    rowsJList.setEnabled(false);
-                    familiesJList.setEnabled(false);
-                    loadTables();
-
-                    tablesJList.setEnabled(true);
-                    rowsJList.setEnabled(true);
-                    familiesJList.setEnabled(true);
-                } catch (IOException ignored) {
+                    databaseWorker.setScanProfile(choosedTable, scanProfilePanel.getProfile());
+                } catch (IOException e1) {
+                    showError(e1);
                 }
             }
         });
 
-        searchRowTextField.addKeyListener(new KeyListener() {
+        valueCodecMenuItem.addActionListener(new ActionListener() {
             @Override
-            public void keyTyped(KeyEvent e) {
-                if (rowsJList.getModel() == null && rowsJList.getModel().getSize() == 0)
+            public void actionPerformed(ActionEvent e) {
+                if (choosedTable == null)
                     return;
-                final DefaultListModel<String> rowsModel = getWantedModel();
-                if (rowsModel == null) {
+                String qualifier = null;
+                if (cellsTableModel != null && jTable.getSelectedRow() != -1)
+                    qualifier = cellsTableModel.getQualifierName(jTable.convertRowIndexToModel(jTable.getSelectedRow()));
+                String family = selectedFamily == null ? null : Bytes.toString(selectedFamily);
+                ValueCodecPanel valueCodecPanel = new ValueCodecPanel(databaseWorker.getValueCodecs(), choosedTable, family, qualifier);
+                int answer = JOptionPane.showConfirmDialog(thisFrame, valueCodecPanel,
+                        resourceBundle.getString("valueCodec"), JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+                if (answer != JOptionPane.OK_OPTION)
+                    return;
+                try {
+                    databaseWorker.getValueCodecs().set(valueCodecPanel.getScope(), valueCodecPanel.getSpec());
+                } catch (Exception e1) {
+                    logger.error(e1);
+                    JOptionPane.showMessageDialog(thisFrame,
+                            e1.getLocalizedMessage(),
+                            e1.getClass().getSimpleName(),
+                            JOptionPane.ERROR_MESSAGE);
                     return;
                 }
-                if (searchRowTextField.getText().isEmpty())
-                    rowsJList.setModel(rowsModel);
-                rowsJList.setEnabled(false);
-                new Thread(new Runnable() {
-                    @Override
-                    public void run() {
-                        rowsJList.setSelectedIndex(-1);
-                        goButton.setEnabled(false);
-                        try {
-                            List<String> newRowsNames = new ArrayList<>(rowsModel.getSize());
-                            progressBarForRows.setVisible(true);
-                            progressBarForRows.setMaximum(rowsModel.getSize() + 10);
-                            for (int i = 0; i < rowsModel.getSize(); i++) {
-                                progressBarForRows.setValue(i);
-                                String elementAt = rowsModel.getElementAt(i);
-                                if (elementAt != null && elementAt.contains(searchRowTextField.getText()))
-                                    newRowsNames.add(elementAt);
-                            }
-                            progressBarForRows.setValue(rowsModel.getSize() + 3);
-                            rowsJList.setListData(newRowsNames.toArray(new String[newRowsNames.size()]));
-                            progressBarForRows.setValue(rowsModel.getSize() + 9);
-                            progressBarForRows.setVisible(false);
-                        } catch (ArrayIndexOutOfBoundsException ignored) {
-                        }
-                        rowsJList.setEnabled(true);
-                    }
-                }).start();
+                if (viewPanel.isVisible())
+                    loadDataToJTable();
             }
+        });
 
+        exportMenuItem.addActionListener(new ActionListener() {
             @Override
-            public void keyPressed(KeyEvent e) {
-                keyTyped(e);
+            public void actionPerformed(ActionEvent e) {
+                if (choosedTable != null)
+                    showExportDialog(choosedTable);
             }
+        });
 
+        importMenuItem.addActionListener(new ActionListener() {
             @Override
-            public void keyReleased(KeyEvent e) {
-                keyTyped(e);
+            public void actionPerformed(ActionEvent e) {
+                if (choosedTable != null)
+                    showImportDialog(choosedTable);
+            }
+        });
+
+        diagnosticsMenuItem.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                new DiagnosticsDialog(thisFrame).setVisible(true);
+            }
+        });
+
+        statisticsMenuItem.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (choosedTable != null)
+                    showStatistics(choosedTable);
+            }
+        });
+
+        cellHistoryMenuItem.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (cellsTableModel == null || jTable.getModel() != cellsTableModel || jTable.getSelectedRow() == -1)
+                    return;
+                int row = jTable.convertRowIndexToModel(jTable.getSelectedRow());
+                showVersionHistory(cellsTableModel.getQualifierAt(row), cellsTableModel.getQualifierName(row));
+            }
+        });
+
+        rowHistoryMenuItem.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (selectedRow != null && selectedFamily != null)
+                    showVersionHistory(null, Bytes.toString(selectedFamily));
+            }
+        });
+
+        commitEditsMenuItem.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                commitEdits();
+            }
+        });
+
+        discardEditsMenuItem.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                editJournal.clear();
+                if (cellsTableModel != null)
+                    cellsTableModel.editsChanged();
+                updateEditsMenu();
+            }
+        });
+
+        refreshButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                databaseWorker.invalidateCaches();
+                loadTables();
+            }
+        });
+
+        searchRowTextField.setToolTipText(resourceBundle.getString("searchHint"));
+        searchRowTextField.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                localFilterTimer.stop();
+                rowsFilter.cancel();
+                searchOnServer(searchRowTextField.getText());
+            }
+        });
+
+        localFilterTimer.setRepeats(false);
+        searchRowTextField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                localFilterTimer.restart();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                localFilterTimer.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
             }
         });
 
@@ -374,138 +583,406 @@ public class MainForm extends JFrame {
                     public void actionPerformed(ActionEvent e) {
                         TableCellListener tcl = (TableCellListener) e.getSource();
                         String newValue = (String) tcl.getNewValue();
+                        if (!newValue.matches("[0-F]+")) {
+                            cellsTableModel.cancelTyped(tcl.getRow());
+                            JOptionPane.showMessageDialog(thisFrame,
+                                    "Данные должны вводиться в HEX-представлении",
+                                    "Ошибка",
+                                    JOptionPane.ERROR_MESSAGE);
+                            return;
+                        }
                         try {
-                            if (newValue.matches("[0-F]+")) {
-                                databaseWorker.changeTheCell(choosedTable, selectedFamily, selectedRow, Bytes.toBytes(tableData.getColumnName(tcl.getColumn())), BytesToStringConverter.toBytes((String) tcl.getNewValue(), HEX));
-                                SwingUtilities.invokeLater(new Runnable() {
-                                    @Override
-                                    public void run() {
-                                        loadDataToJTable();
-                                    }
-                                });
-                                return;
-                            }
-                            SwingUtilities.invokeLater(new Runnable() {
-                                @Override
-                                public void run() {
-                                    JOptionPane.showMessageDialog(thisFrame,
-                                            "Данные должны вводиться в HEX-представлении",
-                                            "Ошибка",
-                                            JOptionPane.ERROR_MESSAGE);
-                                }
-                            });
-                        } catch (final Exception e1) {
-                            logger.error(e1);
-                            SwingUtilities.invokeLater(new Runnable() {
-                                @Override
-                                public void run() {
-                                    JOptionPane.showMessageDialog(thisFrame,
-                                            e1.getLocalizedMessage(),
-                                            e1.getClass().getSimpleName(),
-                                            JOptionPane.ERROR_MESSAGE);
-                                }
-                            });
+                            cellsTableModel.stage(tcl.getRow(), BytesToStringConverter.toBytes(newValue, HEX));
+                        } catch (Exception e1) {
+                            cellsTableModel.cancelTyped(tcl.getRow());
+                            showError(e1);
                         }
+                        updateEditsMenu();
 
                     }
                 });
     }
 
+    /**
+     * Показывает ячейки выбранного семейства выбранной строки: столбец и значение на строку таблицы.
+     * Столбцы подгружаются страницами по мере прокрутки, предыдущая строка перестаёт читаться.
+     */
     private void loadDataToJTable() {
-        final byte[] selectedRowName = selectedRow;
-        final String selectedTableName = choosedTable;
-        final byte[] selectedFamilyName = selectedFamily;
-        SwingUtilities.invokeLater(new Runnable() {
+        clearCellsTable();
+        if (choosedTable == null || selectedRow == null || selectedFamily == null)
+            return;
+        cellsTableModel = new WideRowTableModel(databaseWorker, editJournal, choosedTable, selectedRow, selectedFamily,
+                selectedEncoding, progressBar);
+        jTable.setModel(cellsTableModel);
+        cellsTableModel.loadNextPage();
+    }
+
+    /**
+     * Останавливает чтение показанной строки и очищает таблицу ячеек
+     */
+    public void clearCellsTable() {
+        if (cellsTableModel != null)
+            cellsTableModel.close();
+        cellsTableModel = null;
+        jTable.setModel(new DefaultTableModel());
+    }
+
+    /**
+     * Ищет ключи выбранной таблицы на регион-серверах и показывает найденное по мере поступления страниц.
+     * Пустой запрос возвращает список всех ключей таблицы.
+     */
+    private void searchOnServer(String query) {
+        if (choosedTable == null)
+            return;
+        closeSearch();
+        if (query.isEmpty()) {
+            rowsJList.setModel(getWantedModel());
+            return;
+        }
+        RowKeySearch search;
+        try {
+            search = RowKeySearch.parse(query, selectedEncoding);
+        } catch (Exception e) {
+            logger.error(e);
+            JOptionPane.showMessageDialog(thisFrame,
+                    e.getLocalizedMessage(),
+                    e.getClass().getSimpleName(),
+                    JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        searchListModel = new RowKeysListModel(databaseWorker, choosedTable, search, selectedEncoding, progressBar);
+        rowsJList.setModel(searchListModel);
+        searchListModel.loadNextPage();
+    }
+
+    /**
+     * Отбирает уже прочитанные ключи выбранной таблицы по тексту поля поиска.
+     * Вызывается после паузы в наборе, предыдущий незавершённый отбор отменяется.
+     */
+    private void applyLocalFilter() {
+        RowKeysListModel rowsModel = getWantedModel();
+        if (rowsModel == null)
+            return;
+        closeSearch();
+        String query = searchRowTextField.getText();
+        if (query.isEmpty()) {
+            rowsFilter.cancel();
+            progressBarForRows.setVisible(false);
+            rowsJList.setModel(rowsModel);
+            return;
+        }
+        goButton.setEnabled(false);
+        rowsJList.setModel(rowsFilter.filter(rowsModel, query, selectedEncoding, progressBarForRows));
+    }
+
+    private void closeSearch() {
+        if (searchListModel != null) {
+            searchListModel.close();
+            searchListModel = null;
+        }
+    }
+
+    /**
+     * Перечитывает список таблиц в фоне и показывает его, когда он придёт
+     */
+    public void loadTables() {
+        databaseWorker.getTasks().submit(TaskExecutor.Priority.NORMAL, new Callable<String[]>() {
             @Override
-            public void run() {
-                progressBar.setVisible(true);
-                progressBar.setIndeterminate(true);
-                tableData.setRowCount(0);
-                tableData.setColumnCount(0);
-                Row choosedRowData;
-                try {
-                    choosedRowData = databaseWorker.getRow(selectedTableName, selectedRowName, selectedFamilyName);
-                } catch (IOException | InterruptedException e) {
-                    logger.error(e);
-                    return;
-                }
+            public String[] call() throws Exception {
+                return databaseWorker.getTableNames();
+            }
+        }, tablesLoaded);
+    }
 
-                if (choosedRowData == null || choosedRowData.getData().length < 1) {
-                    logger.info("No data in this row");
-                    progressBar.setIndeterminate(false);
-                    progressBar.setVisible(false);
-                    return;
-                }
+    private void showTables() {
+        boolean hasTables = tablesNames != null && tablesNames.length > 0;
+        tablesJList.setEnabled(hasTables);
+        familiesJList.setEnabled(hasTables);
+        rowsJList.setEnabled(hasTables);
+        utf8RadioButton.setEnabled(hasTables);
+        asciiRadioButton.setEnabled(hasTables);
+        hexRadioButton.setEnabled(hasTables);
+        windows1251RadioButton.setEnabled(hasTables);
+        if (!hasTables)
+            return;
+        tablesJList.setListData(tablesNames);
+        // таблицы из прошлого сеанса может уже не быть
+        if (choosedTable == null || !Arrays.asList(tablesNames).contains(choosedTable))
+            choosedTable = tablesNames[0];
+        tablesJList.setSelectedValue(choosedTable, true);
+    }
 
-                String[] tmpColumnsLink = choosedRowData.getColumns();
-                for (String aTmpColumnsLink : tmpColumnsLink) {
-                    tableData.addColumn(aTmpColumnsLink);
-                }
-                String[] rowValues = new String[choosedRowData.getData().length];
-                try {
-                    int i = 0;
-                    for (byte[] bytes : choosedRowData.getData()) {
-                        rowValues[i++] = BytesToStringConverter.toString(bytes, selectedEncoding);
-                    }
-                    tableData.addRow(rowValues);
-                } catch (UnsupportedEncodingException e) {
-                    logger.error(e);
+    /**
+     * Записывает все ожидающие изменения одним пакетом. Изменения, сделанные во время записи, остаются в журнале.
+     */
+    private void commitEdits() {
+        final List<CellEdit> edits = editJournal.getEdits();
+        if (edits.isEmpty())
+            return;
+        commitEditsMenuItem.setEnabled(false);
+        databaseWorker.getTasks().submit(TaskExecutor.Priority.INTERACTIVE, new Callable<CommitResult>() {
+            @Override
+            public CommitResult call() throws Exception {
+                return databaseWorker.commitEdits(edits);
+            }
+        }, new TaskCallback<CommitResult>() {
+            @Override
+            public void succeeded(CommitResult result) {
+                editJournal.removeAll(result.getCommitted());
+                if (cellsTableModel != null) {
+                    cellsTableModel.editsCommitted(result.getCommitted());
+                    cellsTableModel.conflictsFound(result.getConflicts());
                 }
-                progressBar.setIndeterminate(false);
-                progressBar.setVisible(false);
+                if (!result.getConflicts().isEmpty())
+                    resolveConflicts(result.getConflicts());
+                updateEditsMenu();
+            }
+
+            @Override
+            public void failed(Throwable cause) {
+                updateEditsMenu();
+                showError(cause);
             }
         });
     }
 
-    public void loadTables() throws IOException {
-        new Thread(new Runnable() {
+    /**
+     * Спрашивает, что делать с изменениями ячеек, которые успел изменить кто-то другой:
+     * записать их поверх нового значения при следующей записи или оставить чужое значение.
+     * Правка, сделанная во время записи, сохраняет своё значение и только начинает ожидать новое значение ячейки.
+     */
+    private void resolveConflicts(List<EditConflict> conflicts) {
+        DateFormat dateFormat = DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.MEDIUM);
+        StringBuilder message = new StringBuilder(resourceBundle.getString("editConflicts"));
+        for (EditConflict conflict : conflicts) {
+            CellEdit edit = conflict.getEdit();
+            message.append('\n').append(MessageFormat.format(resourceBundle.getString("editConflict"),
+                    edit.getTableName(),
+                    Bytes.toStringBinary(edit.getRow()),
+                    Bytes.toStringBinary(edit.getQualifier()),
+                    formatCell(edit.getExpectedValue(), edit.getExpectedTimestamp(), dateFormat),
+                    formatCell(conflict.getCurrentValue(), conflict.getCurrentTimestamp(), dateFormat)));
+        }
+        String overwrite = resourceBundle.getString("overwriteConflicts");
+        String keepTheirs = resourceBundle.getString("keepTheirValues");
+        int choice = JOptionPane.showOptionDialog(thisFrame, message.toString(),
+                resourceBundle.getString("editConflictsTitle"), JOptionPane.YES_NO_OPTION,
+                JOptionPane.WARNING_MESSAGE, null, new Object[]{overwrite, keepTheirs}, keepTheirs);
+        List<CellEdit> rejected = new ArrayList<>(conflicts.size());
+        for (EditConflict conflict : conflicts) {
+            if (choice != JOptionPane.YES_OPTION) {
+                rejected.add(conflict.getEdit());
+                continue;
+            }
+            CellEdit edit = conflict.getEdit();
+            // пока шла запись, ячейку могли исправить ещё раз или отменить правку - её значение не трогаем
+            CellEdit pending = editJournal.get(edit.getTableName(), edit.getRow(), edit.getFamily(), edit.getQualifier());
+            if (pending != null)
+                editJournal.stage(pending.rebase(conflict.getCurrentValue(), conflict.getCurrentTimestamp()));
+        }
+        editJournal.removeAll(rejected);
+        if (cellsTableModel != null)
+            cellsTableModel.editsChanged();
+    }
+
+    private String formatCell(byte[] value, long timestamp, DateFormat dateFormat) {
+        if (value == null)
+            return resourceBundle.getString("noCell");
+        String text = Bytes.toStringBinary(value);
+        return timestamp > 0 ? text + " (" + dateFormat.format(new Date(timestamp)) + ')' : text;
+    }
+
+    /**
+     * Спрашивает параметры экспорта таблицы. Семейства и регионы читаются в фоне, сам экспорт идёт в своих потоках,
+     * а его ход показывает немодальное окно.
+     */
+    private void showExportDialog(final String tableName) {
+        databaseWorker.getTasks().submit(TaskExecutor.Priority.INTERACTIVE, new Callable<String[]>() {
             @Override
-            public void run() {
-                try {
-                    tablesNames = databaseWorker.getTableNames();
-                    if (!tablesJList.isEnabled()) {
-                        tablesJList.setEnabled(true);
-                        familiesJList.setEnabled(true);
-                        rowsJList.setEnabled(true);
-
-                        utf8RadioButton.setEnabled(true);
-                        asciiRadioButton.setEnabled(true);
-                        hexRadioButton.setEnabled(true);
-                        windows1251RadioButton.setEnabled(true);
-                    }
-                } catch (IOException exception) {
-                    logger.error(exception);
-                    JOptionPane.showMessageDialog(thisFrame,
-                            exception.getLocalizedMessage(),
-                            exception.getClass().getName(),
-                            JOptionPane.ERROR_MESSAGE);
-                }
+            public String[] call() throws Exception {
+                return databaseWorker.getFamilies(tableName);
+            }
+        }, new TaskCallback<String[]>() {
+            @Override
+            public void succeeded(String[] families) {
+                ExportPanel exportPanel = new ExportPanel(tableName, families, searchRowTextField.getText());
+                int answer = JOptionPane.showConfirmDialog(thisFrame, exportPanel,
+                        resourceBundle.getString("exportTitle") + ' ' + tableName,
+                        JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+                if (answer == JOptionPane.OK_OPTION)
+                    startExport(tableName, exportPanel);
+            }
 
-                if (tablesNames != null && tablesNames.length > 0)
-                    try {
-                        tablesJList.setListData(tablesNames);
-                        if (choosedTable == null) {
-                            choosedTable = tablesNames[0];
-                        }
-                        tablesJList.setSelectedValue(choosedTable, true);
-                    } catch (ArrayIndexOutOfBoundsException e) {
-                        logger.error(e);
-                    }
-                else {
-                    tablesJList.setEnabled(false);
-                    familiesJList.setEnabled(false);
-                    rowsJList.setEnabled(false);
-                    utf8RadioButton.setEnabled(false);
-                    asciiRadioButton.setEnabled(false);
-                    hexRadioButton.setEnabled(false);
-                    windows1251RadioButton.setEnabled(false);
-                }
+            @Override
+            public void failed(Throwable cause) {
+                showError(cause);
+            }
+        });
+    }
+
+    private void startExport(final String tableName, ExportPanel exportPanel) {
+        final RowKeySearch search;
+        final ValueCodec codec;
+        try {
+            search = RowKeySearch.parse(exportPanel.getRange(), selectedEncoding);
+            String spec = exportPanel.getCodecSpec();
+            codec = spec.isEmpty() ? null : ValueCodecs.forSpec(spec);
+        } catch (Exception e) {
+            showError(e);
+            return;
+        }
+        final byte[][] families = exportPanel.getFamilies();
+        final ExportFormat format = exportPanel.getFormat();
+        final File file = exportPanel.getFile();
+        final boolean parallel = exportPanel.isParallel();
+        final String encoding = selectedEncoding;
+        databaseWorker.getTasks().submit(TaskExecutor.Priority.BULK, new Callable<TableExport>() {
+            @Override
+            public TableExport call() throws Exception {
+                return databaseWorker.createExport(tableName, search, families, format, codec, encoding, file, parallel);
+            }
+        }, new TaskCallback<TableExport>() {
+            @Override
+            public void succeeded(TableExport export) {
+                startBulkOperation(resourceBundle.getString("exportTitle") + ' ' + export.getTarget().getName(),
+                        export, false);
+            }
+
+            @Override
+            public void failed(Throwable cause) {
+                showError(cause);
+            }
+        });
+    }
+
+    private void showImportDialog(final String tableName) {
+        ImportPanel importPanel = new ImportPanel();
+        int answer = JOptionPane.showConfirmDialog(thisFrame, importPanel,
+                resourceBundle.getString("importTitle") + ' ' + tableName,
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        if (answer != JOptionPane.OK_OPTION)
+            return;
+        final ValueCodec codec;
+        try {
+            String spec = importPanel.getCodecSpec();
+            codec = spec.isEmpty() ? null : ValueCodecs.forSpec(spec);
+        } catch (Exception e) {
+            showError(e);
+            return;
+        }
+        final File source = importPanel.getFile();
+        final ExportFormat format = importPanel.getFormat();
+        final int writers = importPanel.getWriters();
+        final int maxRowsPerSecond = importPanel.getMaxRowsPerSecond();
+        final boolean bulkLoad = importPanel.isBulkLoad();
+        final String encoding = selectedEncoding;
+        databaseWorker.getTasks().submit(TaskExecutor.Priority.BULK, new Callable<TableImport>() {
+            @Override
+            public TableImport call() throws Exception {
+                return databaseWorker.createImport(tableName, source, format, codec, encoding, writers,
+                        maxRowsPerSecond, bulkLoad);
+            }
+        }, new TaskCallback<TableImport>() {
+            @Override
+            public void succeeded(TableImport tableImport) {
+                startBulkOperation(resourceBundle.getString("importTitle") + ' ' + tableName, tableImport, true);
+            }
+
+            @Override
+            public void failed(Throwable cause) {
+                showError(cause);
+            }
+        });
+    }
+
+    /**
+     * Показывает версии ячейки или всех столбцов выбранного семейства строки
+     *
+     * @param qualifier столбец или null - все столбцы семейства
+     * @param column    имя столбца или семейства для заголовка окна
+     */
+    private void showVersionHistory(byte[] qualifier, String column) {
+        new VersionHistoryDialog(thisFrame, databaseWorker, choosedTable, selectedRow, selectedFamily, qualifier,
+                selectedEncoding, resourceBundle.getString("versionHistory") + ' ' + choosedTable + ' '
+                + Bytes.toStringBinary(selectedRow) + ' ' + column).setVisible(true);
+    }
+
+    /**
+     * Показывает размер таблицы по статусу кластера, не читая её ключи
+     */
+    private void showStatistics(final String tableName) {
+        databaseWorker.getTasks().submit(TaskExecutor.Priority.BULK, new Callable<TableStatistics>() {
+            @Override
+            public TableStatistics call() throws Exception {
+                return databaseWorker.getTableStatistics(tableName);
+            }
+        }, new TaskCallback<TableStatistics>() {
+            @Override
+            public void succeeded(TableStatistics statistics) {
+                new TableStatisticsDialog(thisFrame, databaseWorker, statistics).setVisible(true);
+            }
+
+            @Override
+            public void failed(Throwable cause) {
+                showError(cause);
+            }
+        });
+    }
+
+    /**
+     * Запускает экспорт или импорт и показывает его ход, а по окончании - итоги
+     *
+     * @param changesTable операция меняет таблицу, прочитанные раньше строки устаревают
+     */
+    private void startBulkOperation(String title, BulkOperation operation, final boolean changesTable) {
+        final BulkProgressDialog progressDialog = new BulkProgressDialog(thisFrame, title, operation);
+        operation.start(new TaskCallback<BulkOperation>() {
+            @Override
+            public void succeeded(BulkOperation operation) {
+                progressDialog.dispose();
+                if (changesTable)
+                    databaseWorker.invalidateCaches();
+                JOptionPane.showMessageDialog(thisFrame, BulkProgressDialog.getStatus(operation),
+                        resourceBundle.getString(operation.isCancelled() ? "bulkCancelled" : "bulkDone"),
+                        JOptionPane.INFORMATION_MESSAGE);
+            }
+
+            @Override
+            public void failed(Throwable cause) {
+                progressDialog.dispose();
+                if (changesTable)
+                    databaseWorker.invalidateCaches();
+                showError(cause);
             }
-        }).start();
+        });
+        progressDialog.setVisible(true);
+    }
+
+    private void updateEditsMenu() {
+        int pending = editJournal.size();
+        commitEditsMenuItem.setText(MessageFormat.format(resourceBundle.getString("commitEdits"), pending));
+        commitEditsMenuItem.setEnabled(pending > 0);
+        discardEditsMenuItem.setEnabled(pending > 0);
     }
 
-    public void setUtf8ListModels(Map<String, DefaultListModel<String>> utf8ListModels) {
-        this.utf8ListModels = utf8ListModels;
+    private void showError(Throwable cause) {
+        logger.error(cause);
+        JOptionPane.showMessageDialog(thisFrame,
+                cause.getLocalizedMessage(),
+                cause.getClass().getSimpleName(),
+                JOptionPane.ERROR_MESSAGE);
+    }
+
+    /**
+     * Останавливает чтение и забывает ключи всех открытых таблиц
+     */
+    public void clearRowsListModels() {
+        for (RowKeysListModel rowsListModel : rowsListModels.values()) {
+            rowsListModel.close();
+        }
+        rowsListModels = new HashMap<>();
+        rowsFilter.cancel();
+        closeSearch();
     }
 
     public JList<String> getTablesJList() {
@@ -520,27 +997,12 @@ public class MainForm extends JFrame {
         return familiesJList;
     }
 
-    public DefaultTableModel getTableData() {
-        return tableData;
-    }
-
     public void setTablesNames(String[] tablesNames) {
         this.tablesNames = tablesNames;
     }
 
-    public DefaultListModel<String> getWantedModel() {
-        switch (selectedEncoding) {
-            case HEX:
-                return hexListModels.get(choosedTable);
-            case UTF8:
-                return utf8ListModels.get(choosedTable);
-            case AHCII:
-                return ahciiListModels.get(choosedTable);
-            case CP1251:
-                return cp1251ListModels.get(choosedTable);
-            default:
-                return null;
-        }
+    public RowKeysListModel getWantedModel() {
+        return rowsListModels.get(choosedTable);
     }
 
     {
@@ -0,0 +1,43 @@
+package ui;
+
+import brain.ScanProfile;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.ResourceBundle;
+
+/**
+ * Панель редактирования профиля сканирования таблицы, показывается в JOptionPane
+ */
+public class ScanProfilePanel extends JPanel {
+    private static final ResourceBundle resourceBundle = ResourceBundle.getBundle("MainFormResources");
+    private final JSpinner cachingSpinner;
+    private final JSpinner batchSpinner;
+    private final JCheckBox cacheBlocksCheckBox;
+    private final JCheckBox keyOnlyCheckBox;
+    private final JCheckBox fastFillCheckBox;
+
+    public ScanProfilePanel(ScanProfile profile) {
+        super(new GridLayout(4, 2, 5, 5));
+        cachingSpinner = new JSpinner(new SpinnerNumberModel(profile.getCaching(), 1, 100000, 100));
+        batchSpinner = new JSpinner(new SpinnerNumberModel(profile.getBatch(), 0, 100000, 10));
+        cacheBlocksCheckBox = new JCheckBox(resourceBundle.getString("scanProfileCacheBlocks"), profile.isCacheBlocks());
+        keyOnlyCheckBox = new JCheckBox(resourceBundle.getString("scanProfileKeyOnly"), profile.isKeyOnly());
+        fastFillCheckBox = new JCheckBox(resourceBundle.getString("scanProfileFastFill"), profile.isFastFill());
+        add(new JLabel(resourceBundle.getString("scanProfileCaching")));
+        add(cachingSpinner);
+        add(new JLabel(resourceBundle.getString("scanProfileBatch")));
+        add(batchSpinner);
+        add(cacheBlocksCheckBox);
+        add(keyOnlyCheckBox);
+        add(fastFillCheckBox);
+    }
+
+    public ScanProfile getProfile() {
+        return new ScanProfile((Integer) cachingSpinner.getValue(),
+                (Integer) batchSpinner.getValue(),
+                cacheBlocksCheckBox.isSelected(),
+                keyOnlyCheckBox.isSelected(),
+                fastFillCheckBox.isSelected());
+    }
+}
@@ -141,7 +141,7 @@ public class TableCellListener implements PropertyChangeListener, Runnable {
 
         //  The data has changed, invoke the supplied Action
 
-        if (!newValue.equals(oldValue)) {
+        if (!String.valueOf(newValue).equals(String.valueOf(oldValue))) {
             //  Make a copy of the data in case another cell starts editing
             //  while processing this change
 
@@ -0,0 +1,179 @@
+package ui;
+
+import brain.BulkOperation;
+import brain.DatabaseWorker;
+import brain.RegionStatistics;
+import brain.TableRowCount;
+import brain.TableStatistics;
+import brain.TaskCallback;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.text.MessageFormat;
+import java.util.Date;
+import java.util.ResourceBundle;
+
+/**
+ * Немодальное окно статистики таблицы: итоги по таблице и распределение строк и данных по регионам.
+ * Точный подсчёт строк запускается отсюда же, его ход показывается в окне.
+ */
+public class TableStatisticsDialog extends JDialog {
+    private static final ResourceBundle resourceBundle = ResourceBundle.getBundle("MainFormResources");
+    private static final int REFRESH_INTERVAL_MS = 500;
+    private static final int PROGRESS_STEPS = 1000;
+    private final DatabaseWorker databaseWorker;
+    private final RegionsTableModel regionsModel = new RegionsTableModel();
+    private final JLabel summaryLabel = new JLabel(" ");
+    private final JProgressBar progressBar = new JProgressBar();
+    private final JButton countButton = new JButton(resourceBundle.getString("countRows"));
+    private final Timer refreshTimer;
+    private TableStatistics statistics;
+    private TableRowCount rowCount;
+
+    public TableStatisticsDialog(Frame owner, DatabaseWorker databaseWorker, TableStatistics statistics) {
+        super(owner, resourceBundle.getString("statisticsTitle") + ' ' + statistics.getTableName(), false);
+        this.databaseWorker = databaseWorker;
+        progressBar.setMaximum(PROGRESS_STEPS);
+        progressBar.setStringPainted(true);
+        progressBar.setVisible(false);
+        JPanel panel = new JPanel(new BorderLayout(5, 5));
+        panel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        panel.add(summaryLabel, BorderLayout.NORTH);
+        panel.add(new JScrollPane(new JTable(regionsModel)), BorderLayout.CENTER);
+        JPanel bottom = new JPanel(new BorderLayout(5, 5));
+        bottom.add(progressBar, BorderLayout.CENTER);
+        bottom.add(countButton, BorderLayout.EAST);
+        panel.add(bottom, BorderLayout.SOUTH);
+        setContentPane(panel);
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+
+        countButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (rowCount == null)
+                    startRowCount();
+                else {
+                    countButton.setEnabled(false);
+                    rowCount.cancel();
+                }
+            }
+        });
+        refreshTimer = new Timer(REFRESH_INTERVAL_MS, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (rowCount != null)
+                    progressBar.setValue((int) (rowCount.getProgress() * PROGRESS_STEPS));
+            }
+        });
+        setStatistics(statistics);
+        pack();
+        setLocationRelativeTo(owner);
+    }
+
+    private void setStatistics(TableStatistics statistics) {
+        this.statistics = statistics;
+        long exactRows = statistics.getExactRows();
+        summaryLabel.setText(MessageFormat.format(resourceBundle.getString("statisticsSummary"),
+                statistics.getRegions().size(), statistics.getEstimatedRows(),
+                exactRows < 0 ? "-" : exactRows, statistics.getStorefiles(), statistics.getStorefileSizeMB(),
+                statistics.getMemStoreSizeMB(), statistics.getSampledRows(), statistics.getAverageRowBytes(),
+                new Date(statistics.getCollectedAt())));
+        regionsModel.fireTableDataChanged();
+    }
+
+    private void startRowCount() {
+        rowCount = databaseWorker.createRowCount(statistics);
+        countButton.setText(resourceBundle.getString("cancelBulk"));
+        progressBar.setValue(0);
+        progressBar.setVisible(true);
+        refreshTimer.start();
+        rowCount.start(new TaskCallback<BulkOperation>() {
+            @Override
+            public void succeeded(BulkOperation operation) {
+                TableStatistics counted = rowCount.getStatistics();
+                finishRowCount();
+                if (counted != null)
+                    setStatistics(counted);
+            }
+
+            @Override
+            public void failed(Throwable cause) {
+                finishRowCount();
+                JOptionPane.showMessageDialog(TableStatisticsDialog.this, cause.getLocalizedMessage(),
+                        cause.getClass().getSimpleName(), JOptionPane.ERROR_MESSAGE);
+            }
+        });
+    }
+
+    private void finishRowCount() {
+        rowCount = null;
+        refreshTimer.stop();
+        progressBar.setVisible(false);
+        countButton.setText(resourceBundle.getString("countRows"));
+        countButton.setEnabled(true);
+    }
+
+    @Override
+    public void dispose() {
+        refreshTimer.stop();
+        if (rowCount != null)
+            rowCount.cancel();
+        super.dispose();
+    }
+
+    /**
+     * Регионы таблицы по строке на регион
+     */
+    private class RegionsTableModel extends AbstractTableModel {
+        private final String[] columns = resourceBundle.getString("statisticsColumns").split(",");
+
+        @Override
+        public int getRowCount() {
+            return statistics == null ? 0 : statistics.getRegions().size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return columns.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return columns[column];
+        }
+
+        @Override
+        public Object getValueAt(int rowIndex, int columnIndex) {
+            RegionStatistics region = statistics.getRegions().get(rowIndex);
+            switch (columnIndex) {
+                case 0:
+                    return Bytes.toStringBinary(region.getStartKey());
+                case 1:
+                    return Bytes.toStringBinary(region.getEndKey());
+                case 2:
+                    return region.getServer();
+                case 3:
+                    return region.getStorefiles();
+                case 4:
+                    return region.getStorefileSizeMB();
+                case 5:
+                    return region.getMemStoreSizeMB();
+                case 6:
+                    return region.getEstimatedRows();
+                case 7:
+                    return region.getExactRows() < 0 ? null : region.getExactRows();
+                case 8:
+                    long total = statistics.getEstimatedRows();
+                    return total == 0 ? null : String.format("%.1f%%", 100.0 * region.getEstimatedRows() / total);
+                case 9:
+                    return region.getReadRequests();
+                default:
+                    return region.getWriteRequests();
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package ui;
+
+import brain.ValueCodec;
+import brain.ValueCodecRegistry;
+import brain.ValueCodecs;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ResourceBundle;
+
+/**
+ * Панель назначения кодека значений таблице, семейству или столбцу, показывается в JOptionPane
+ */
+public class ValueCodecPanel extends JPanel {
+    private static final ResourceBundle resourceBundle = ResourceBundle.getBundle("MainFormResources");
+    private final ValueCodecRegistry registry;
+    private final JComboBox<String> scopeComboBox;
+    private final JComboBox<String> codecComboBox;
+    private final JTextArea avroSchemaTextArea = new JTextArea(8, 40);
+
+    /**
+     * @param family    выбранное семейство или null
+     * @param qualifier выбранный столбец или null
+     */
+    public ValueCodecPanel(ValueCodecRegistry registry, String tableName, String family, String qualifier) {
+        super(new BorderLayout(5, 5));
+        this.registry = registry;
+        scopeComboBox = new JComboBox<>();
+        scopeComboBox.addItem(ValueCodecRegistry.scope(tableName, null, null));
+        if (family != null) {
+            scopeComboBox.addItem(ValueCodecRegistry.scope(tableName, family, null));
+            if (qualifier != null)
+                scopeComboBox.addItem(ValueCodecRegistry.scope(tableName, family, qualifier));
+            scopeComboBox.setSelectedIndex(scopeComboBox.getItemCount() - 1);
+        }
+        codecComboBox = new JComboBox<>();
+        codecComboBox.addItem("");
+        for (String name : ValueCodecs.SIMPLE_NAMES) {
+            codecComboBox.addItem(name);
+        }
+        codecComboBox.addItem(ValueCodecs.AVRO);
+
+        JPanel fields = new JPanel(new GridLayout(2, 2, 5, 5));
+        fields.add(new JLabel(resourceBundle.getString("valueCodecScope")));
+        fields.add(scopeComboBox);
+        fields.add(new JLabel(resourceBundle.getString("valueCodec")));
+        fields.add(codecComboBox);
+        add(fields, BorderLayout.NORTH);
+        JPanel avroPanel = new JPanel(new BorderLayout());
+        avroPanel.add(new JLabel(resourceBundle.getString("valueCodecAvroSchema")), BorderLayout.NORTH);
+        avroPanel.add(new JScrollPane(avroSchemaTextArea), BorderLayout.CENTER);
+        add(avroPanel, BorderLayout.CENTER);
+
+        scopeComboBox.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                showAssigned();
+            }
+        });
+        codecComboBox.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                avroSchemaTextArea.setEnabled(ValueCodecs.AVRO.equals(codecComboBox.getSelectedItem()));
+            }
+        });
+        showAssigned();
+    }
+
+    private void showAssigned() {
+        ValueCodec codec = registry.get(getScope());
+        String spec = codec == null ? "" : codec.getSpec();
+        String schema = ValueCodecs.avroSchema(spec);
+        codecComboBox.setSelectedItem(schema != null ? ValueCodecs.AVRO : spec);
+        avroSchemaTextArea.setText(schema != null ? schema : "");
+        avroSchemaTextArea.setEnabled(schema != null);
+    }
+
+    public String getScope() {
+        return (String) scopeComboBox.getSelectedItem();
+    }
+
+    /**
+     * @return описание выбранного кодека, пустая строка - показывать в выбранной кодировке
+     */
+    public String getSpec() {
+        String name = (String) codecComboBox.getSelectedItem();
+        if (ValueCodecs.AVRO.equals(name))
+            return ValueCodecs.avroSpec(avroSchemaTextArea.getText().trim());
+        return name;
+    }
+}
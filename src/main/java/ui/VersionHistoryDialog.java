@@ -0,0 +1,87 @@
+package ui;
+
+import brain.DatabaseWorker;
+import brain.TextDiff;
+import brain.VersionHistoryModel;
+
+import javax.swing.*;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.ListSelectionListener;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ResourceBundle;
+
+/**
+ * Немодальное окно истории версий ячейки или строки. Две выбранные версии сравниваются построчно
+ * в том виде, в котором их показывает назначенный кодек.
+ */
+public class VersionHistoryDialog extends JDialog {
+    private static final ResourceBundle resourceBundle = ResourceBundle.getBundle("MainFormResources");
+    private final VersionHistoryModel model;
+    private final JTable versionsTable;
+
+    /**
+     * @param qualifier столбец или null - история всех столбцов семейства
+     */
+    public VersionHistoryDialog(Frame owner, DatabaseWorker databaseWorker, String tableName, byte[] row,
+                                byte[] family, byte[] qualifier, String encoding, String title) {
+        super(owner, title, false);
+        JProgressBar progressBar = new JProgressBar();
+        progressBar.setVisible(false);
+        model = new VersionHistoryModel(databaseWorker, tableName, row, family, qualifier, encoding, progressBar);
+        versionsTable = new JTable(model);
+        final JButton compareButton = new JButton(resourceBundle.getString("compareVersions"));
+        compareButton.setEnabled(false);
+        JPanel panel = new JPanel(new BorderLayout(5, 5));
+        panel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        panel.add(new JScrollPane(versionsTable), BorderLayout.CENTER);
+        JPanel bottom = new JPanel(new BorderLayout(5, 5));
+        bottom.add(progressBar, BorderLayout.CENTER);
+        bottom.add(compareButton, BorderLayout.EAST);
+        panel.add(bottom, BorderLayout.SOUTH);
+        setContentPane(panel);
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+
+        versionsTable.getSelectionModel().addListSelectionListener(new ListSelectionListener() {
+            @Override
+            public void valueChanged(ListSelectionEvent e) {
+                compareButton.setEnabled(versionsTable.getSelectedRowCount() == 2);
+            }
+        });
+        compareButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                int[] selected = versionsTable.getSelectedRows();
+                if (selected.length == 2)
+                    showDiff(selected[1], selected[0]);
+            }
+        });
+        model.loadNextPage();
+        pack();
+        setLocationRelativeTo(owner);
+    }
+
+    /**
+     * Показывает, что изменилось от старой версии к новой
+     */
+    private void showDiff(int olderRow, int newerRow) {
+        StringBuilder text = new StringBuilder();
+        for (String line : TextDiff.diff(model.getDecoded(olderRow), model.getDecoded(newerRow))) {
+            text.append(line).append('\n');
+        }
+        JTextArea textArea = new JTextArea(text.toString(), 20, 80);
+        textArea.setEditable(false);
+        textArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, textArea.getFont().getSize()));
+        JOptionPane.showMessageDialog(this, new JScrollPane(textArea),
+                versionsTable.getValueAt(olderRow, VersionHistoryModel.TIMESTAMP_COLUMN) + " -> "
+                        + versionsTable.getValueAt(newerRow, VersionHistoryModel.TIMESTAMP_COLUMN),
+                JOptionPane.PLAIN_MESSAGE);
+    }
+
+    @Override
+    public void dispose() {
+        model.close();
+        super.dispose();
+    }
+}